@@ -1,13 +1,14 @@
 package com.trigram.zero.flow;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
@@ -87,7 +88,7 @@ public interface Async {
   }
 
   /**
-   * <p>of.</p>
+   * 每个任务使用工厂创建的一个新线程，{@link #joinAll(ZeroFlow)}边遍历边启动，取消之后不再创建新的线程
    *
    * @param factory a {@link java.util.concurrent.ThreadFactory} object
    * @return a {@link com.trigram.zero.flow.Async} object
@@ -113,13 +114,68 @@ public interface Async {
       @Override
       public void joinAll(ZeroFlow<Runnable> tasks) {
 
-        ListZeroFlow<Runnable> list = tasks.toList();
-        CountDownLatch              latch = new CountDownLatch(list.size());
-        list.consume(r -> factory.newThread(() -> {
-          r.run();
-          latch.countDown();
-        }).start());
-        apply(latch::wait);
+        List<Thread> threads = new ArrayList<>();
+        tasks.consume(r -> {
+          Thread thread = factory.newThread(r);
+          thread.start();
+          threads.add(thread);
+        });
+        for (Thread thread : threads) {
+          apply(thread::join);
+        }
+      }
+    };
+  }
+
+  /**
+   * 每个任务使用一个新的守护线程，适合生产者、消费者这类长时间阻塞的任务，不会占用公共线程池
+   *
+   * @return a {@link com.trigram.zero.flow.Async} object
+   */
+  static Async daemon() {
+
+    return of((ThreadFactory) r -> {
+      Thread thread = new Thread(r);
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * 绑定取消标记，取消之后还没开始的任务不再执行，{@link #joinAll(ZeroFlow)}也不再提交新的任务
+   *
+   * @param cancellation a {@link com.trigram.zero.flow.Cancellation} object
+   * @return a {@link com.trigram.zero.flow.Async} object
+   */
+  default Async cancellable(Cancellation cancellation) {
+
+    Async async = this;
+    return new Async() {
+
+      @Override
+      public Object submit(Runnable runnable) {
+
+        return async.submit(() -> {
+          if (!cancellation.isCancelled()) {
+            runnable.run();
+          }
+        });
+      }
+
+      @Override
+      public void join(Object task) {
+
+        async.join(task);
+      }
+
+      @Override
+      public void joinAll(ZeroFlow<Runnable> tasks) {
+
+        async.joinAll(tasks.cancelOn(cancellation).map(r -> () -> {
+          if (!cancellation.isCancelled()) {
+            r.run();
+          }
+        }));
       }
     };
   }
@@ -164,6 +220,18 @@ public interface Async {
    */
   void joinAll(ZeroFlow<Runnable> tasks);
 
+  /**
+   * 延迟一段时间后把任务交给当前Async执行，由共享的{@link TimerWheel}计时，等待期间不占用线程
+   *
+   * @param runnable a {@link java.lang.Runnable} object
+   * @param delayMillis a long
+   * @return 可以取消的定时任务
+   */
+  default TimerWheel.Timeout schedule(Runnable runnable, long delayMillis) {
+
+    return TimerWheel.shared().schedule(() -> submit(runnable), delayMillis, TimeUnit.MILLISECONDS);
+  }
+
   /**
    * <p>toAsync.</p>
    *
@@ -180,9 +248,7 @@ public interface Async {
 
         checkState();
         task = submit(() -> source.consumeTillStop(t -> {
-          if (cancelled) {
-            ZeroFlow.stop();
-          }
+          cancellation.check();
           consumer.accept(t);
         }));
       }
@@ -212,30 +278,34 @@ public interface Async {
       public void consume(Consumer<T> consumer) {
 
         checkState();
-        HotChannel<T> channel = new HotChannel<>();
-        task = submit(() -> {
-          source.consumeTillStop(t -> {
-            if (cancelled) {
-              ZeroFlow.stop();
+        HotChannel<T> channel  = new HotChannel<>();
+        Runnable      onCancel = channel::clear;
+        cancellation.onCancel(onCancel);
+        try {
+          task = submit(() -> {
+            source.consumeTillStop(t -> {
+              cancellation.check();
+              if (channel.isEmpty()) {
+                channel.offer(t);
+                channel.easyNotify();
+              } else {
+                consumer.accept(t);
+              }
+            });
+            channel.stop = true;
+            channel.easyNotify();
+          });
+          while (true) {
+            while (!channel.isEmpty() && !cancellation.isCancelled()) {
+              consumer.accept(channel.poll());
             }
-            if (channel.isEmpty()) {
-              channel.offer(t);
-              channel.easyNotify();
-            } else {
-              consumer.accept(t);
+            if (channel.stop) {
+              break;
             }
-          });
-          channel.stop = true;
-          channel.easyNotify();
-        });
-        while (true) {
-          while (!channel.isEmpty()) {
-            consumer.accept(channel.poll());
-          }
-          if (channel.stop) {
-            break;
+            channel.easyWait();
           }
-          channel.easyWait();
+        } finally {
+          cancellation.removeOnCancel(onCancel);
         }
       }
     };
@@ -0,0 +1,213 @@
+package com.trigram.zero.flow;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 限制同时进行的异步任务数量的窗口，窗口满时提交者先等待一个结果，相当于按许可数背压
+ * <p>
+ * 只在提交者线程中使用。有序时按提交顺序等待最早的任务，无序时哪个先完成就先输出哪个。
+ * 每个任务的超时从提交时开始计算，超时的任务会被取消，并抛出以{@link TimeoutException}为原因的{@link CompletionException}
+ *
+ * @author Truma
+ */
+class AsyncWindow<E> {
+
+  private final int maxInFlight;
+
+  private final long timeoutNanos;
+
+  private final boolean ordered;
+
+  /**
+   * 未输出的任务及其截止时间，按提交顺序排列。同一个future可能被提交多次，每次都是单独的一项
+   */
+  private final ArrayDeque<Pending<E>> inFlight = new ArrayDeque<>();
+
+  private final LinkedBlockingQueue<Pending<E>> done = new LinkedBlockingQueue<>();
+
+  /**
+   * 下游已经停止，上游中间的take等操作可能吞掉停止信号，此时不能再输出剩余的结果
+   */
+  private boolean stopped;
+
+  AsyncWindow(int maxInFlight, long timeoutMillis, boolean ordered) {
+
+    this.maxInFlight  = maxInFlight;
+    this.timeoutNanos = timeoutMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+    this.ordered      = ordered;
+  }
+
+  static <T, E> ZeroFlow<E> map(
+      ZeroFlow<T> source, int maxInFlight, long timeoutMillis, boolean ordered, Function<T, CompletableFuture<E>> function
+  ) {
+
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("non-positive maxInFlight");
+    }
+    return c -> {
+      AsyncWindow<E> window = new AsyncWindow<>(maxInFlight, timeoutMillis, ordered);
+      try {
+        source.consume(t -> window.submit(() -> function.apply(t), c));
+        if (!window.stopped) {
+          window.drain(c);
+        }
+      } finally {
+        window.cancel();
+      }
+    };
+  }
+
+  void submit(Supplier<CompletableFuture<E>> task, Consumer<E> c) {
+
+    expire();
+    if (inFlight.size() == maxInFlight) {
+      emit(c);
+    }
+    Pending<E> pending = new Pending<>(task.get(), System.nanoTime() + timeoutNanos);
+    inFlight.addLast(pending);
+    if (!ordered) {
+      pending.future.whenComplete((r, e) -> done.offer(pending));
+    }
+  }
+
+  void drain(Consumer<E> c) {
+
+    while (!inFlight.isEmpty()) {
+      emit(c);
+    }
+  }
+
+  private void emit(Consumer<E> c) {
+
+    try {
+      c.accept(next());
+    } catch (StopException e) {
+      stopped = true;
+      throw e;
+    }
+  }
+
+  void cancel() {
+
+    inFlight.forEach(p -> p.future.cancel(true));
+    inFlight.clear();
+  }
+
+  /**
+   * 检查整个窗口，任何一个已过截止时间还没完成的任务都会使窗口超时，不论它是否排在最前面
+   */
+  private void expire() {
+
+    if (timeoutNanos == 0) {
+      return;
+    }
+    long now = System.nanoTime();
+    for (Pending<E> p : inFlight) {
+      if (p.deadline - now <= 0 && !p.future.isDone()) {
+        p.future.cancel(true);
+        throw timeout();
+      }
+    }
+  }
+
+  /**
+   * 未完成的任务中最早的截止时间，截止时间随提交顺序递增
+   */
+  private long nextDeadline() {
+
+    for (Pending<E> p : inFlight) {
+      if (!p.future.isDone()) {
+        return p.deadline;
+      }
+    }
+    return System.nanoTime();
+  }
+
+  private E next() {
+
+    try {
+      return ordered ? nextOrdered() : nextUnordered();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private E nextOrdered() throws InterruptedException {
+
+    CompletableFuture<E> future = inFlight.peekFirst().future;
+    try {
+      E res = timeoutNanos == 0 ? future.get() : await(future);
+      inFlight.pollFirst();
+      return res;
+    } catch (ExecutionException e) {
+      inFlight.pollFirst();
+      throw BatchChannel.rethrow(e.getCause());
+    }
+  }
+
+  /**
+   * 等待最前面的任务，同时按窗口中最早的截止时间醒来检查超时
+   */
+  private E await(CompletableFuture<E> future) throws InterruptedException, ExecutionException {
+
+    while (true) {
+      expire();
+      try {
+        return future.get(Math.max(0, nextDeadline() - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException ignore) {
+        // 有任务到期，交给expire检查
+      }
+    }
+  }
+
+  private E nextUnordered() throws InterruptedException {
+
+    while (true) {
+      Pending<E> pending;
+      if (timeoutNanos == 0) {
+        pending = done.take();
+      } else {
+        expire();
+        pending = done.poll(Math.max(0, nextDeadline() - System.nanoTime()), TimeUnit.NANOSECONDS);
+      }
+      if (pending != null && inFlight.remove(pending)) {
+        try {
+          return pending.future.get();
+        } catch (ExecutionException e) {
+          throw BatchChannel.rethrow(e.getCause());
+        }
+      }
+    }
+  }
+
+  private CompletionException timeout() {
+
+    return new CompletionException(new TimeoutException(
+        "async element timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms"));
+  }
+
+  private static final class Pending<E> {
+
+    final CompletableFuture<E> future;
+
+    final long deadline;
+
+    Pending(CompletableFuture<E> future, long deadline) {
+
+      this.future   = future;
+      this.deadline = deadline;
+    }
+
+  }
+
+}
@@ -16,12 +16,21 @@ public abstract class AsyncZeroFlow<T> implements ZeroFlow<T> {
 
   protected Object task;
 
-  protected boolean cancelled;
+  /**
+   * 由此派生的异步流共享同一个取消标记
+   */
+  protected final Cancellation cancellation;
 
   AsyncZeroFlow(Async async, ZeroFlow<T> source) {
 
-    this.async  = async;
-    this.source = source;
+    this(async, source, new Cancellation());
+  }
+
+  AsyncZeroFlow(Async async, ZeroFlow<T> source, Cancellation cancellation) {
+
+    this.async        = async;
+    this.source       = source;
+    this.cancellation = cancellation;
   }
 
   /**
@@ -29,10 +38,20 @@ public abstract class AsyncZeroFlow<T> implements ZeroFlow<T> {
    */
   public void cancel() {
 
-    cancelled = true;
+    cancellation.cancel();
     joinConsume();
   }
 
+  /**
+   * <p>cancellation.</p>
+   *
+   * @return a {@link com.trigram.zero.flow.Cancellation} object
+   */
+  public Cancellation cancellation() {
+
+    return cancellation;
+  }
+
   /**
    * <p>joinConsume.</p>
    */
@@ -61,7 +80,7 @@ public abstract class AsyncZeroFlow<T> implements ZeroFlow<T> {
    */
   public AsyncZeroFlow<T> onStart(Runnable runnable) {
 
-    return new AsyncZeroFlow<T>(async, source) {
+    return new AsyncZeroFlow<T>(async, source, cancellation) {
 
       @Override
       public void consume(Consumer<T> consumer) {
@@ -80,7 +99,7 @@ public abstract class AsyncZeroFlow<T> implements ZeroFlow<T> {
    */
   public AsyncZeroFlow<T> onCompletion(Runnable runnable) {
 
-    return new AsyncZeroFlow<T>(async, source) {
+    return new AsyncZeroFlow<T>(async, source, cancellation) {
 
       @Override
       public void consume(Consumer<T> consumer) {
@@ -95,7 +114,7 @@ public abstract class AsyncZeroFlow<T> implements ZeroFlow<T> {
   @Override
   public <E> AsyncZeroFlow<E> map(Function<T, E> function) {
 
-    return new AsyncZeroFlow<E>(async, source.map(function)) {
+    return new AsyncZeroFlow<E>(async, source.map(function), cancellation) {
 
       @Override
       public void consume(Consumer<E> consumer) {
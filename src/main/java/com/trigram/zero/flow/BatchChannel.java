@@ -0,0 +1,317 @@
+package com.trigram.zero.flow;
+
+import com.trigram.zero.flow.iterators.CloseableItr;
+import com.trigram.zero.flow.iterators.PickItr;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 有界的批量传递通道，一个生产者线程写入，一个消费者线程读取，只能消费一次
+ * <p>
+ * 数据先攒成批次再放入阻塞队列，降低线程间同步的次数；队列满时生产者阻塞，形成背压。
+ * 消费者提前停止时通道关闭并清空缓冲，生产者之后的写入返回false，据此停止上游
+ *
+ * @author Truma
+ */
+public class BatchChannel<T> implements ItrZeroFlow<T> {
+
+  private static final Object[] END = new Object[0];
+
+  private final ArrayBlockingQueue<Object[]> queue;
+
+  private final int batchSize;
+
+  private Object[] batch;
+
+  private int index;
+
+  private volatile boolean closed;
+
+  private volatile Throwable error;
+
+  private volatile long offered;
+
+  private volatile long taken;
+
+  private WeakReference<Object> owner;
+
+  /**
+   * 按缓冲的数据量自动划分批次大小和队列容量
+   *
+   * @param bufferSize
+   *     最多缓冲的数据量
+   */
+  public BatchChannel(int bufferSize) {
+
+    this(Math.max(1, bufferSize / batchSizeOf(bufferSize)), batchSizeOf(bufferSize));
+  }
+
+  /**
+   * <p>Constructor for BatchChannel.</p>
+   *
+   * @param capacity
+   *     队列中最多缓冲的批次数量
+   * @param batchSize
+   *     每个批次的数据量
+   */
+  public BatchChannel(int capacity, int batchSize) {
+
+    if (capacity <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException("non-positive capacity or batch size");
+    }
+    this.queue     = new ArrayBlockingQueue<>(capacity);
+    this.batchSize = batchSize;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> BatchChannel<T>[] array(int length) {
+
+    return (BatchChannel<T>[]) new BatchChannel<?>[length];
+  }
+
+  static int batchSizeOf(int bufferSize) {
+
+    return Math.max(1, Math.min(1024, bufferSize >> 2));
+  }
+
+  /**
+   * 将受检异常包装后抛出，运行时异常和错误原样抛出
+   *
+   * @param e a {@link java.lang.Throwable} object
+   * @return 永远不会返回，便于写成throw语句
+   */
+  static RuntimeException rethrow(Throwable e) {
+
+    if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    }
+    if (e instanceof Error) {
+      throw (Error) e;
+    }
+    throw new RuntimeException(e);
+  }
+
+  /**
+   * 消费者对象被回收后视为通道关闭，作为消费者中途放弃又没有显式关闭时的兜底，比如交给外部的迭代器。
+   * 需要在生产者开始写入之前调用，生产者阻塞时会定期检查
+   *
+   * @param owner 持有通道的消费者对象，通道只保留它的弱引用
+   */
+  public void watch(Object owner) {
+
+    this.owner = new WeakReference<>(owner);
+  }
+
+  /**
+   * 在async提供的线程中遍历数据源并写入通道，通道关闭后数据源随之停止
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param source a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @return 通道本身
+   */
+  public BatchChannel<T> produce(Async async, ZeroFlow<T> source) {
+
+    async.submit(() -> {
+      try {
+        source.consumeTillStop(t -> {
+          if (!offer(t)) {
+            ZeroFlow.stop();
+          }
+        });
+        complete();
+      } catch (Throwable e) {
+        fail(e);
+      }
+    });
+    return this;
+  }
+
+  /**
+   * 生产者写入一个数据，批次满时放入队列，队列满时阻塞
+   *
+   * @param t a T object
+   * @return 消费者是否还在消费，false时生产者应停止
+   */
+  public boolean offer(T t) {
+
+    if (closed) {
+      return false;
+    }
+    if (batch == null) {
+      batch = new Object[batchSize];
+    }
+    batch[index++] = t;
+    return index < batchSize || put(batch);
+  }
+
+  /**
+   * 将未满的批次立刻放入队列
+   *
+   * @return 消费者是否还在消费
+   */
+  public boolean flush() {
+
+    if (closed) {
+      return false;
+    }
+    return index == 0 || put(Arrays.copyOf(batch, index));
+  }
+
+  /**
+   * 生产者正常结束
+   */
+  public void complete() {
+
+    if (flush()) {
+      put(END);
+    }
+  }
+
+  /**
+   * 生产者异常结束，异常会在消费者线程中重新抛出
+   *
+   * @param e a {@link java.lang.Throwable} object
+   */
+  public void fail(Throwable e) {
+
+    error = e;
+    if (!closed) {
+      put(END);
+    }
+  }
+
+  /**
+   * 关闭通道并释放缓冲的数据，生产者之后的写入都会被丢弃
+   */
+  public void close() {
+
+    closed = true;
+    queue.clear();
+  }
+
+  /**
+   * <p>isClosed.</p>
+   *
+   * @return a boolean
+   */
+  public boolean isClosed() {
+
+    return closed;
+  }
+
+  /**
+   * 已放入队列但还没有被消费者取走的数据量，不包括生产者正在填充的批次
+   *
+   * @return a long
+   */
+  public long depth() {
+
+    return Math.max(0, offered - taken);
+  }
+
+  private boolean put(Object[] b) {
+
+    batch = null;
+    index = 0;
+    try {
+      if (owner == null) {
+        queue.put(b);
+      } else {
+        while (!queue.offer(b, 100, TimeUnit.MILLISECONDS)) {
+          if (closed || owner.get() == null) {
+            close();
+            return false;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      return false;
+    }
+    offered += b.length;
+    return !closed;
+  }
+
+  private Object[] take() {
+
+    try {
+      Object[] b = queue.take();
+      if (b == END) {
+        closed = true;
+        if (error != null) {
+          throw rethrow(error);
+        }
+      } else {
+        taken += b.length;
+      }
+      return b;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @SuppressWarnings("unchecked")
+  public void consume(Consumer<T> consumer) {
+
+    try {
+      for (Object[] b = take(); b != END; b = take()) {
+        for (Object o : b) {
+          consumer.accept((T) o);
+        }
+      }
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * 关闭迭代器即关闭通道，生产者随之停止
+   *
+   * @return a {@link com.trigram.zero.flow.iterators.CloseableItr} object
+   */
+  @Override
+  public CloseableItr<T> iterator() {
+
+    return new Itr();
+  }
+
+  private final class Itr extends PickItr<T> implements CloseableItr<T> {
+
+    private Object[] cur = END;
+
+    private int pos;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T pick() {
+
+      while (pos == cur.length) {
+        if (closed && queue.isEmpty()) {
+          return ZeroFlow.stop();
+        }
+        cur = take();
+        pos = 0;
+        if (cur == END) {
+          return ZeroFlow.stop();
+        }
+      }
+      return (T) cur[pos++];
+    }
+
+    @Override
+    public void close() {
+
+      BatchChannel.this.close();
+    }
+
+  }
+
+}
@@ -0,0 +1,162 @@
+package com.trigram.zero.flow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * 由生产线程按大块写入、消费者按输入流读取的字节管道，块的数量有界，消费者跟不上时生产线程阻塞
+ * <p>
+ * 消费者关闭输入流后生产线程的下一次写入会停止生产；生产线程的异常在消费者读取时重新抛出
+ *
+ * @author Truma
+ * @see ByteSource#gunzip()
+ */
+final class BlockPipe extends InputStream {
+
+  static final int BLOCK_SIZE = 1 << 18;
+
+  static final int BLOCKS = 4;
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private final BatchChannel<byte[]> channel = new BatchChannel<>(BLOCKS, 1);
+
+  private final Iterator<byte[]> blocks = channel.iterator();
+
+  private byte[] cur = EMPTY;
+
+  private int pos;
+
+  private BlockPipe() {
+
+  }
+
+  /**
+   * 在async提供的线程中运行生产者
+   *
+   * @param async 生产者使用的线程
+   * @param producer 把数据写入{@link Sink}
+   * @return 读取生产结果的输入流
+   */
+  static BlockPipe start(Async async, IOChain.Consumer<Sink> producer) {
+
+    BlockPipe pipe = new BlockPipe();
+    async.submit(() -> {
+      try (Sink sink = pipe.new Sink()) {
+        producer.accept(sink);
+      } catch (StopException ignore) {
+      } catch (Throwable e) {
+        pipe.channel.fail(e);
+        return;
+      }
+      pipe.channel.complete();
+    });
+    return pipe;
+  }
+
+  @Override
+  public int read() throws IOException {
+
+    return next() ? cur[pos++] & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+
+    if (len == 0) {
+      return 0;
+    }
+    if (!next()) {
+      return -1;
+    }
+    int n = Math.min(len, cur.length - pos);
+    System.arraycopy(cur, pos, b, off, n);
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public int available() {
+
+    return cur.length - pos;
+  }
+
+  @Override
+  public void close() {
+
+    channel.close();
+  }
+
+  private boolean next() throws IOException {
+
+    try {
+      while (pos == cur.length) {
+        if (!blocks.hasNext()) {
+          return false;
+        }
+        cur = blocks.next();
+        pos = 0;
+      }
+      return true;
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * 生产者写入的一端，攒满一块后放入管道
+   */
+  final class Sink extends OutputStream {
+
+    private byte[] block = new byte[BLOCK_SIZE];
+
+    private int size;
+
+    @Override
+    public void write(int b) {
+
+      if (size == block.length) {
+        offer(block);
+      }
+      block[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+
+      while (len > 0) {
+        if (size == block.length) {
+          offer(block);
+        }
+        int n = Math.min(len, block.length - size);
+        System.arraycopy(b, off, block, size, n);
+        size += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+    @Override
+    public void close() {
+
+      if (size > 0) {
+        offer(Arrays.copyOf(block, size));
+      }
+    }
+
+    private void offer(byte[] full) {
+
+      block = new byte[BLOCK_SIZE];
+      size  = 0;
+      if (!channel.offer(full)) {
+        ZeroFlow.stop();
+      }
+    }
+
+  }
+
+}
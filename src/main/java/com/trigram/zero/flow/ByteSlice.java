@@ -0,0 +1,426 @@
+package com.trigram.zero.flow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 字节数组上一段区间的可变视图，同时作为{@link CharSequence}使用
+ * <p>
+ * 按行、按字段扫描时同一个实例会被反复指向新的区间，只在回调中有效，需要保留时调用{@link #toString()}或者{@link #copy()}。
+ * 全部是ASCII字节时按字节直接得到字符，否则按字符集解码到内部复用的字符缓冲。
+ * 按字节查找分隔符和换行要求字符集兼容ASCII，只接受UTF-8和ASCII字符编码为同值字节的单字节字符集，
+ * UTF-16以及GBK、Shift_JIS这类后续字节可能落在ASCII范围内的字符集会被拒绝
+ *
+ * @author Truma
+ * @see ByteSource#scanLines()
+ */
+public class ByteSlice implements CharSequence {
+
+  private final Charset charset;
+
+  private byte[] bytes;
+
+  private int offset;
+
+  private int length;
+
+  /**
+   * 是否全是ASCII，0为未知，1为是，2为否
+   */
+  private int ascii;
+
+  private CharBuffer chars;
+
+  private CharsetDecoder decoder;
+
+  /**
+   * <p>Constructor for ByteSlice.</p>
+   *
+   * @param charset 非ASCII内容使用的字符集，必须兼容ASCII
+   * @throws IllegalArgumentException 字符集不兼容ASCII时
+   */
+  public ByteSlice(Charset charset) {
+
+    if (!asciiCompatible(charset)) {
+      throw new IllegalArgumentException("charset is not ASCII compatible: " + charset);
+    }
+    this.charset = charset;
+    this.bytes   = new byte[0];
+  }
+
+  /**
+   * 按UTF-8解码的空视图
+   */
+  public ByteSlice() {
+
+    this(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 按分隔符扫描输入流，每条记录都复用同一个视图
+   *
+   * @param is 输入流，由调用方关闭
+   * @param delimiter 分隔符
+   * @param stripCr 是否去掉记录末尾的\r
+   * @param charset a {@link java.nio.charset.Charset} object
+   * @param consumer a {@link java.util.function.Consumer} object
+   * @throws java.io.IOException if any.
+   */
+  static void scan(InputStream is, byte delimiter, boolean stripCr, Charset charset, Consumer<ByteSlice> consumer)
+      throws IOException {
+
+    ByteSlice slice = new ByteSlice(charset);
+    byte[]    buf   = new byte[1 << 16];
+    int       start = 0, end = 0, n;
+    while ((n = is.read(buf, end, buf.length - end)) >= 0) {
+      int p = end;
+      end += n;
+      for (; p < end; p++) {
+        if (buf[p] == delimiter) {
+          int len = p - start;
+          if (stripCr && len > 0 && buf[p - 1] == '\r') {
+            len--;
+          }
+          consumer.accept(slice.set(buf, start, len));
+          start = p + 1;
+        }
+      }
+      if (start > 0) {
+        System.arraycopy(buf, start, buf, 0, end - start);
+        end -= start;
+        start = 0;
+      } else if (end == buf.length) {
+        buf = Arrays.copyOf(buf, buf.length << 1);
+      }
+    }
+    if (end > start) {
+      int len = end - start;
+      if (stripCr && buf[end - 1] == '\r') {
+        len--;
+      }
+      consumer.accept(slice.set(buf, start, len));
+    }
+  }
+
+  static byte asciiDelimiter(char delimiter) {
+
+    if (delimiter >= 0x80) {
+      throw new IllegalArgumentException("non-ASCII delimiter: " + delimiter);
+    }
+    return (byte) delimiter;
+  }
+
+  /**
+   * 是否可以按字节查找分隔符和按字节取ASCII字符：UTF-8、US-ASCII、ISO-8859-1，
+   * 或者ASCII字符都编码为同值单个字节的单字节字符集
+   *
+   * @param charset a {@link java.nio.charset.Charset} object
+   * @return a boolean
+   */
+  static boolean asciiCompatible(Charset charset) {
+
+    if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+        || charset.equals(StandardCharsets.ISO_8859_1)) {
+      return true;
+    }
+    // 多字节编码（GBK、Shift_JIS等）的后续字节可能落在ASCII范围内，按字节查找会切开一个字符
+    if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1) {
+      return false;
+    }
+    char[] chars = new char[0x80];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = (char) i;
+    }
+    byte[] bytes = new String(chars).getBytes(charset);
+    if (bytes.length != chars.length) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] != i) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 指向新的区间，不拷贝
+   *
+   * @param bytes a byte array
+   * @param offset 起始位置
+   * @param length 字节数
+   * @return this
+   */
+  public ByteSlice set(byte[] bytes, int offset, int length) {
+
+    this.bytes  = bytes;
+    this.offset = offset;
+    this.length = length;
+    this.ascii  = 0;
+    if (chars != null) {
+      chars.clear().limit(0);
+    }
+    return this;
+  }
+
+  /**
+   * <p>array.</p>
+   *
+   * @return 底层的字节数组
+   */
+  public byte[] array() {
+
+    return bytes;
+  }
+
+  /**
+   * <p>offset.</p>
+   *
+   * @return 在底层数组中的起始位置
+   */
+  public int offset() {
+
+    return offset;
+  }
+
+  /**
+   * <p>byteLength.</p>
+   *
+   * @return 字节数
+   */
+  public int byteLength() {
+
+    return length;
+  }
+
+  /**
+   * <p>byteAt.</p>
+   *
+   * @param index 相对起始位置的下标
+   * @return a byte
+   */
+  public byte byteAt(int index) {
+
+    return bytes[offset + index];
+  }
+
+  /**
+   * <p>isAscii.</p>
+   *
+   * @return 是否全是ASCII字节
+   */
+  public boolean isAscii() {
+
+    if (ascii == 0) {
+      ascii = 1;
+      for (int i = offset, end = offset + length; i < end; i++) {
+        if (bytes[i] < 0) {
+          ascii = 2;
+          break;
+        }
+      }
+    }
+    return ascii == 1;
+  }
+
+  /**
+   * <p>isBlank.</p>
+   *
+   * @return 是否为空或者只有空白
+   */
+  public boolean isBlank() {
+
+    for (int i = offset, end = offset + length; i < end; i++) {
+      if (bytes[i] > ' ' || bytes[i] < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>parseInt.</p>
+   *
+   * @return an int
+   * @see NumberParser#parseInt(byte[], int, int)
+   */
+  public int parseInt() {
+
+    return NumberParser.parseInt(bytes, offset, offset + length);
+  }
+
+  /**
+   * <p>parseLong.</p>
+   *
+   * @return a long
+   * @see NumberParser#parseLong(byte[], int, int)
+   */
+  public long parseLong() {
+
+    return NumberParser.parseLong(bytes, offset, offset + length);
+  }
+
+  /**
+   * <p>parseDouble.</p>
+   *
+   * @return a double
+   * @see NumberParser#parseDouble(byte[], int, int)
+   */
+  public double parseDouble() {
+
+    return NumberParser.parseDouble(bytes, offset, offset + length);
+  }
+
+  /**
+   * 按分隔符遍历字段，每个字段都复用同一个视图，与当前视图共享底层数组
+   *
+   * @param delimiter 分隔符
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  public ZeroFlow<ByteSlice> fields(byte delimiter) {
+
+    return c -> {
+      ByteSlice field = new ByteSlice(charset);
+      int       start = offset, end = offset + length;
+      for (int i = offset; i < end; i++) {
+        if (bytes[i] == delimiter) {
+          c.accept(field.set(bytes, start, i - start));
+          start = i + 1;
+        }
+      }
+      c.accept(field.set(bytes, start, end - start));
+    };
+  }
+
+  /**
+   * 按分隔符切分到复用的视图数组中，与{@link Splitter#splitInto(String, String[])}一致：
+   * 最多切出数组长度个字段，超出的部分被丢弃，数组中多余的位置保持不变
+   *
+   * @param delimiter 分隔符
+   * @param fields 复用的视图，为null的位置会被创建
+   * @return 切分出的字段数
+   */
+  public int splitInto(byte delimiter, ByteSlice[] fields) {
+
+    int count = 0, start = offset, end = offset + length;
+    for (int i = offset; i < end && count < fields.length; i++) {
+      if (bytes[i] == delimiter) {
+        field(fields, count++).set(bytes, start, i - start);
+        start = i + 1;
+      }
+    }
+    if (count < fields.length) {
+      field(fields, count++).set(bytes, start, end - start);
+    }
+    return count;
+  }
+
+  private ByteSlice field(ByteSlice[] fields, int index) {
+
+    ByteSlice field = fields[index];
+    if (field == null) {
+      fields[index] = field = new ByteSlice(charset);
+    }
+    return field;
+  }
+
+  /**
+   * 拷贝出不再与扫描缓冲共享的视图
+   *
+   * @return a {@link com.trigram.zero.flow.ByteSlice} object
+   */
+  public ByteSlice copy() {
+
+    return new ByteSlice(charset).set(Arrays.copyOfRange(bytes, offset, offset + length), 0, length);
+  }
+
+  /**
+   * 按字符比较内容
+   *
+   * @param cs a {@link java.lang.CharSequence} object
+   * @return a boolean
+   */
+  public boolean contentEquals(CharSequence cs) {
+
+    int len = length();
+    if (len != cs.length()) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      if (charAt(i) != cs.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int length() {
+
+    return isAscii() ? length : decoded().limit();
+  }
+
+  @Override
+  public char charAt(int index) {
+
+    if (isAscii()) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+      }
+      return (char) bytes[offset + index];
+    }
+    return decoded().get(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+
+    if (isAscii()) {
+      if (start < 0 || end > length || start > end) {
+        throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+      }
+      return new ByteSlice(charset).set(bytes, offset + start, end - start);
+    }
+    return decoded().subSequence(start, end).toString();
+  }
+
+  @Override
+  public String toString() {
+
+    return isAscii()
+        ? new String(bytes, offset, length, StandardCharsets.ISO_8859_1)
+        : new String(bytes, offset, length, charset);
+  }
+
+  private CharBuffer decoded() {
+
+    if (chars != null && chars.limit() > 0) {
+      return chars;
+    }
+    if (decoder == null) {
+      decoder = charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    int capacity = (int) (length * (double) decoder.maxCharsPerByte()) + 1;
+    if (chars == null || chars.capacity() < capacity) {
+      chars = CharBuffer.allocate(capacity);
+    }
+    chars.clear();
+    decoder.reset();
+    ByteBuffer in = ByteBuffer.wrap(bytes, offset, length);
+    decoder.decode(in, chars, true);
+    decoder.flush(chars);
+    chars.flip();
+    return chars;
+  }
+
+}
@@ -7,8 +7,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
@@ -19,6 +21,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
 import java.util.function.UnaryOperator;
 
 /**
@@ -67,17 +71,31 @@ public interface ByteSource extends IOChain.Closable<InputStream> {
         return (Closable<BufferedReader>) () -> Files.newBufferedReader(path, charset());
       }
 
+      @Override
+      public Path path() {
+
+        return path;
+      }
+
       @Override
       public Path write(Path target) {
 
-        if (!path.equals(target)) {
-          IOChain.apply(path, p -> Files.copy(p, target, StandardCopyOption.REPLACE_EXISTING));
-        }
-        return target;
+        return FileTransfer.sameFile(target, path) ? target : write(target, 0, Long.MAX_VALUE);
       }
     };
   }
 
+  /**
+   * 把文件映射到内存，单个映射不超过{@link MappedByteSource#SEGMENT_SIZE}，更大的文件分段映射
+   *
+   * @param path a {@link java.nio.file.Path} object
+   * @return a {@link com.trigram.zero.flow.MappedByteSource} object
+   */
+  static MappedByteSource mapped(Path path) {
+
+    return MappedByteSource.of(path, MappedByteSource.SEGMENT_SIZE);
+  }
+
   /**
    * <p>of.</p>
    *
@@ -353,6 +371,181 @@ public interface ByteSource extends IOChain.Closable<InputStream> {
     return toReader().toSeq(BufferedReader::readLine, skip);
   }
 
+  /**
+   * 按字节扫描的逐行遍历，每行都复用同一个{@link ByteSlice}视图，行尾的\r会被去掉
+   * <p>
+   * 不为每行创建字符串，视图只在回调中有效，需要保留时调用{@link ByteSlice#toString()}。
+   * 按字节查找换行，字符集必须兼容ASCII，UTF-16这类字符集在遍历时抛出{@link IllegalArgumentException}
+   *
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<ByteSlice> scanLines() {
+
+    return c -> use(is -> ByteSlice.scan(is, (byte) '\n', true, charset(), c));
+  }
+
+  /**
+   * 按字节扫描的按分隔符遍历，每条记录都复用同一个{@link ByteSlice}视图
+   *
+   * @param delimiter 分隔符
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<ByteSlice> scanRecords(byte delimiter) {
+
+    return c -> use(is -> ByteSlice.scan(is, delimiter, false, charset(), c));
+  }
+
+  /**
+   * 逐行按分隔符读取整数，空白的字段被跳过，不为每个数字创建字符串
+   *
+   * @param delimiter 行内的分隔符，只能是ASCII字符
+   * @return a {@link com.trigram.zero.flow.IntZeroFlow} object
+   */
+  default IntZeroFlow toIntFlow(char delimiter) {
+
+    byte sep = ByteSlice.asciiDelimiter(delimiter);
+    return c -> scanLines().consume(line -> line.fields(sep).consume(f -> {
+      if (!f.isBlank()) {
+        c.accept(f.parseInt());
+      }
+    }));
+  }
+
+  /**
+   * 逐行按分隔符读取长整数，空白的字段被跳过
+   *
+   * @param delimiter 行内的分隔符，只能是ASCII字符
+   * @return a {@link com.trigram.zero.flow.BaseZeroFlow} object
+   */
+  default BaseZeroFlow<LongConsumer> toLongFlow(char delimiter) {
+
+    byte sep = ByteSlice.asciiDelimiter(delimiter);
+    return c -> scanLines().consume(line -> line.fields(sep).consume(f -> {
+      if (!f.isBlank()) {
+        c.accept(f.parseLong());
+      }
+    }));
+  }
+
+  /**
+   * 逐行按分隔符读取浮点数，空白的字段被跳过
+   *
+   * @param delimiter 行内的分隔符，只能是ASCII字符
+   * @return a {@link com.trigram.zero.flow.BaseZeroFlow} object
+   */
+  default BaseZeroFlow<DoubleConsumer> toDoubleFlow(char delimiter) {
+
+    byte sep = ByteSlice.asciiDelimiter(delimiter);
+    return c -> scanLines().consume(line -> line.fields(sep).consume(f -> {
+      if (!f.isBlank()) {
+        c.accept(f.parseDouble());
+      }
+    }));
+  }
+
+  /**
+   * 按CSV解析，字段可以用双引号包裹
+   *
+   * @param delimiter 分隔符，只能是ASCII字符
+   * @return a {@link com.trigram.zero.flow.CsvReader} object
+   */
+  default CsvReader toCsv(char delimiter) {
+
+    return CsvReader.of(this, delimiter);
+  }
+
+  /**
+   * 解压gzip数据，多个成员依次解压，解压在独立的线程中进行，读取方按大块取走结果
+   *
+   * @return 保留字符集的解压结果
+   */
+  default ByteSource gunzip() {
+
+    return ofStream(() -> GzipCodec.gunzip(this)).withCharset(charset());
+  }
+
+  /**
+   * 解压gzip数据，本地文件的成员带有'BC'字段（{@link #gzip(Async)}或BGZF的输出）时按成员分组在async中并行解压，
+   * 按原顺序输出，其他情况同{@link #gunzip()}
+   *
+   * @param async 解压使用的线程
+   * @return 保留字符集的解压结果
+   */
+  default ByteSource gunzip(Async async) {
+
+    return ofStream(() -> GzipCodec.gunzip(this, async)).withCharset(charset());
+  }
+
+  /**
+   * 解压zlib格式的数据，解压在独立的线程中进行
+   *
+   * @return 保留字符集的解压结果
+   */
+  default ByteSource inflate() {
+
+    return ofStream(() -> GzipCodec.inflate(this)).withCharset(charset());
+  }
+
+  /**
+   * 压缩为gzip格式，压缩在独立的线程中进行，写到文件时使用{@link #write(Path)}
+   *
+   * @return a {@link com.trigram.zero.flow.ByteSource} object
+   */
+  default ByteSource gzip() {
+
+    return ofStream(() -> GzipCodec.gzip(this));
+  }
+
+  /**
+   * 按64KB左右的块在async中并行压缩为多成员的gzip，每个成员带有记录自身大小的'BC'字段，可以被{@link #gunzip(Async)}并行解压
+   *
+   * @param async 压缩使用的线程
+   * @return a {@link com.trigram.zero.flow.ByteSource} object
+   */
+  default ByteSource gzip(Async async) {
+
+    return ofStream(() -> GzipCodec.gzip(this, async));
+  }
+
+  /**
+   * 压缩为zlib格式，与{@link #inflate()}对应
+   *
+   * @return a {@link com.trigram.zero.flow.ByteSource} object
+   */
+  default ByteSource deflate() {
+
+    return ofStream(() -> GzipCodec.deflate(this));
+  }
+
+  /**
+   * 按块并行解码的逐行遍历，按块的顺序输出
+   *
+   * @param async 解码使用的线程
+   * @param chunkBytes 每块的大约字节数
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @see #parallelLines(Async, int, boolean)
+   */
+  default ZeroFlow<String> parallelLines(Async async, int chunkBytes) {
+
+    return parallelLines(async, chunkBytes, true);
+  }
+
+  /**
+   * 按块并行解码的逐行遍历，只有本地文件可以按位置切块，其他数据源退化为{@link #toSeq()}
+   *
+   * @param async 解码使用的线程
+   * @param chunkBytes 每块的大约字节数，块的结尾会延伸到下一个换行
+   * @param ordered 是否按块的顺序输出
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<String> parallelLines(Async async, int chunkBytes, boolean ordered) {
+
+    Path path = path();
+    return path != null
+        ? mapped(path).withCharset(charset()).parallelLines(async, chunkBytes, ordered)
+        : toSeq();
+  }
+
   /**
    * <p>withCharset.</p>
    *
@@ -382,10 +575,16 @@ public interface ByteSource extends IOChain.Closable<InputStream> {
         return origin.toBytes();
       }
 
+      @Override
+      public Path path() {
+
+        return origin.path();
+      }
+
       @Override
       public Path write(Path target) {
 
-        return origin.write(target);
+        return FileTransfer.sameFile(target, origin.path()) ? target : origin.write(target);
       }
     };
   }
@@ -402,6 +601,61 @@ public interface ByteSource extends IOChain.Closable<InputStream> {
     return target;
   }
 
+  /**
+   * 写出数据源的一段，本地文件通过{@link java.nio.channels.FileChannel#transferTo}传输，不经过堆
+   *
+   * @param target 目标文件，不能是数据源本身，经过符号链接或者不同写法的路径指向数据源时同样被拒绝
+   * @param offset 起始位置
+   * @param length 字节数，超出末尾的部分被忽略
+   * @return a {@link java.nio.file.Path} object
+   */
+  default Path write(Path target, long offset, long length) {
+
+    if (FileTransfer.sameFile(target, path())) {
+      throw new IllegalArgumentException("source and target are the same file: " + target);
+    }
+    try (FileChannel channel = FileTransfer.create(target)) {
+      FileTransfer.append(this, offset, length, channel);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return target;
+  }
+
+  /**
+   * 把多个数据源依次写入同一个文件，本地文件之间的拷贝由内核完成
+   *
+   * @param target 目标文件，不能是其中的数据源
+   * @param sources 数据源
+   * @return a {@link java.nio.file.Path} object
+   */
+  static Path concat(Path target, ByteSource... sources) {
+
+    for (ByteSource source : sources) {
+      if (FileTransfer.sameFile(target, source.path())) {
+        throw new IllegalArgumentException("source and target are the same file: " + target);
+      }
+    }
+    try (FileChannel channel = FileTransfer.create(target)) {
+      for (ByteSource source : sources) {
+        FileTransfer.append(source, 0, Long.MAX_VALUE, channel);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return target;
+  }
+
+  /**
+   * 本地文件的路径
+   *
+   * @return 不是本地文件时为null
+   */
+  default Path path() {
+
+    return null;
+  }
+
   /**
    * <p>writeTemp.</p>
    *
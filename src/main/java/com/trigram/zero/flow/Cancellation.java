@@ -0,0 +1,80 @@
+package com.trigram.zero.flow;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 协作式的取消标记，可以在任意线程中取消，各个处理环节自行检查后停止
+ * <p>
+ * 检查只是一次volatile读；阻塞中的环节可以通过{@link #onCancel(Runnable)}注册回调，在取消时被唤醒或者释放缓冲
+ *
+ * @author Truma
+ * @see ZeroFlow#cancelOn(Cancellation)
+ * @see Async#cancellable(Cancellation)
+ */
+public class Cancellation {
+
+  private final ConcurrentLinkedQueue<Runnable> callbacks = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean cancelled;
+
+  /**
+   * 取消，已注册的回调在当前线程中各执行一次
+   */
+  public void cancel() {
+
+    cancelled = true;
+    runCallbacks();
+  }
+
+  /**
+   * <p>isCancelled.</p>
+   *
+   * @return a boolean
+   */
+  public boolean isCancelled() {
+
+    return cancelled;
+  }
+
+  /**
+   * 已经取消时停止当前的遍历
+   */
+  public void check() {
+
+    if (cancelled) {
+      ZeroFlow.stop();
+    }
+  }
+
+  /**
+   * 注册取消时的回调，已经取消时立刻执行
+   *
+   * @param callback a {@link java.lang.Runnable} object
+   */
+  public void onCancel(Runnable callback) {
+
+    callbacks.offer(callback);
+    if (cancelled) {
+      runCallbacks();
+    }
+  }
+
+  /**
+   * 移除还没执行的回调，注册回调的环节结束时调用，避免长期使用的标记积累失效的回调
+   *
+   * @param callback 注册时传入的同一个对象
+   * @return 回调是否还没执行
+   */
+  public boolean removeOnCancel(Runnable callback) {
+
+    return callbacks.remove(callback);
+  }
+
+  private void runCallbacks() {
+
+    for (Runnable r = callbacks.poll(); r != null; r = callbacks.poll()) {
+      r.run();
+    }
+  }
+
+}
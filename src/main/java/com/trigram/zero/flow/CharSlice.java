@@ -0,0 +1,150 @@
+package com.trigram.zero.flow;
+
+/**
+ * 字符序列上一段区间的可变视图，不拷贝字符
+ * <p>
+ * 切分时同一个实例会被反复指向新的区间，只在回调中有效，需要保留时调用{@link #toString()}
+ *
+ * @author Truma
+ * @see Splitter#splitView(String)
+ */
+public class CharSlice implements CharSequence {
+
+  private CharSequence source = "";
+
+  private int start;
+
+  private int end;
+
+  /**
+   * 指向新的区间
+   *
+   * @param source a {@link java.lang.CharSequence} object
+   * @param start 起始位置
+   * @param end 结束位置，不包含
+   * @return this
+   */
+  public CharSlice set(CharSequence source, int start, int end) {
+
+    this.source = source;
+    this.start  = start;
+    this.end    = end;
+    return this;
+  }
+
+  /**
+   * <p>source.</p>
+   *
+   * @return 底层的字符序列
+   */
+  public CharSequence source() {
+
+    return source;
+  }
+
+  /**
+   * <p>start.</p>
+   *
+   * @return 在底层字符序列中的起始位置
+   */
+  public int start() {
+
+    return start;
+  }
+
+  /**
+   * <p>end.</p>
+   *
+   * @return 在底层字符序列中的结束位置，不包含
+   */
+  public int end() {
+
+    return end;
+  }
+
+  /**
+   * <p>parseInt.</p>
+   *
+   * @return an int
+   * @see NumberParser#parseInt(CharSequence, int, int)
+   */
+  public int parseInt() {
+
+    return NumberParser.parseInt(source, start, end);
+  }
+
+  /**
+   * <p>parseLong.</p>
+   *
+   * @return a long
+   * @see NumberParser#parseLong(CharSequence, int, int)
+   */
+  public long parseLong() {
+
+    return NumberParser.parseLong(source, start, end);
+  }
+
+  /**
+   * <p>parseDouble.</p>
+   *
+   * @return a double
+   * @see NumberParser#parseDouble(CharSequence, int, int)
+   */
+  public double parseDouble() {
+
+    return NumberParser.parseDouble(source, start, end);
+  }
+
+  /**
+   * 按字符比较内容
+   *
+   * @param cs a {@link java.lang.CharSequence} object
+   * @return a boolean
+   */
+  public boolean contentEquals(CharSequence cs) {
+
+    int len = end - start;
+    if (len != cs.length()) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      if (source.charAt(start + i) != cs.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int length() {
+
+    return end - start;
+  }
+
+  @Override
+  public char charAt(int index) {
+
+    if (index < 0 || index >= end - start) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+    }
+    return source.charAt(start + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+
+    if (start < 0 || end > this.end - this.start || start > end) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + (this.end - this.start));
+    }
+    return new CharSlice().set(source, this.start + start, this.start + end);
+  }
+
+  @Override
+  public String toString() {
+
+    return source instanceof String
+        ? ((String) source).substring(start, end)
+        : source.subSequence(start, end).toString();
+  }
+
+}
@@ -0,0 +1,206 @@
+package com.trigram.zero.flow;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按时间处理数据的操作使用的时钟，单位为毫秒
+ * <p>
+ * {@link #coarse()}由后台定时刷新，读取只是一次volatile读，适合每个数据都要看时间的高吞吐场景，长时间没有读取时停止刷新；
+ * {@link #manual(long)}由调用方推进，用于让按时间的测试结果确定
+ *
+ * @author Truma
+ */
+@FunctionalInterface
+public interface Clock {
+
+  /**
+   * 当前时间
+   *
+   * @return 毫秒数
+   */
+  long millis();
+
+  /**
+   * 直接读取系统时间的时钟
+   *
+   * @return a {@link com.trigram.zero.flow.Clock} object
+   */
+  static Clock system() {
+
+    return System::currentTimeMillis;
+  }
+
+  /**
+   * 共享的粗粒度时钟，精度为1毫秒
+   *
+   * @return a {@link com.trigram.zero.flow.Clock} object
+   */
+  static Clock coarse() {
+
+    return Coarse.SHARED;
+  }
+
+  /**
+   * 指定精度的粗粒度时钟，由共享的{@link TimerWheel}定时刷新，不再使用时需要{@link Coarse#close()}
+   *
+   * @param resolutionMillis 刷新的间隔
+   * @return a {@link com.trigram.zero.flow.Clock.Coarse} object
+   */
+  static Coarse coarse(long resolutionMillis) {
+
+    return new Coarse(resolutionMillis, TimerWheel.shared());
+  }
+
+  /**
+   * 指定精度的粗粒度时钟，由给定的时间轮定时刷新，不再使用时需要{@link Coarse#close()}
+   *
+   * @param resolutionMillis 刷新的间隔
+   * @param wheel 刷新使用的时间轮
+   * @return a {@link com.trigram.zero.flow.Clock.Coarse} object
+   */
+  static Coarse coarse(long resolutionMillis, TimerWheel wheel) {
+
+    return new Coarse(resolutionMillis, wheel);
+  }
+
+  /**
+   * 手动推进的时钟
+   *
+   * @param start 初始时间
+   * @return a {@link com.trigram.zero.flow.Clock.Manual} object
+   */
+  static Manual manual(long start) {
+
+    return new Manual(start);
+  }
+
+  /**
+   * 第一次读取时才开始定时刷新，连续{@link #IDLE_TICKS}次刷新之间都没有读取时停止，之后的读取重新开始刷新
+   */
+  class Coarse implements Clock, AutoCloseable {
+
+    static final Coarse SHARED = new Coarse(1, null);
+
+    static final int IDLE_TICKS = 1000;
+
+    private final long resolutionMillis;
+
+    /**
+     * 为null时使用{@link TimerWheel#shared()}，共享时钟在类初始化时不创建时间轮
+     */
+    private final TimerWheel wheel;
+
+    private TimerWheel.Timeout timeout;
+
+    private volatile boolean running;
+
+    private volatile boolean read;
+
+    private volatile boolean closed;
+
+    private volatile long now = System.currentTimeMillis();
+
+    private int idle;
+
+    Coarse(long resolutionMillis, TimerWheel wheel) {
+
+      if (resolutionMillis <= 0) {
+        throw new IllegalArgumentException("non-positive resolution");
+      }
+      this.resolutionMillis = resolutionMillis;
+      this.wheel            = wheel;
+    }
+
+    @Override
+    public long millis() {
+
+      if (!running) {
+        return start();
+      }
+      if (!read) {
+        read = true;
+      }
+      return now;
+    }
+
+    /**
+     * 停止刷新，之后的读取直接返回系统时间
+     */
+    @Override
+    public synchronized void close() {
+
+      closed = true;
+      stop();
+    }
+
+    private synchronized long start() {
+
+      long t = System.currentTimeMillis();
+      if (closed) {
+        return t;
+      }
+      now = t;
+      if (!running) {
+        read    = true;
+        running = true;
+        timeout = (wheel == null ? TimerWheel.shared() : wheel).scheduleAtFixedRate(
+            this::refresh, resolutionMillis, resolutionMillis, TimeUnit.MILLISECONDS);
+      }
+      return t;
+    }
+
+    private void refresh() {
+
+      now = System.currentTimeMillis();
+      if (read) {
+        read = false;
+        idle = 0;
+      } else if (++idle >= IDLE_TICKS) {
+        synchronized (this) {
+          if (!read) {
+            stop();
+          }
+        }
+      }
+    }
+
+    private void stop() {
+
+      running = false;
+      if (timeout != null) {
+        timeout.cancel();
+        timeout = null;
+      }
+    }
+
+  }
+
+  class Manual implements Clock {
+
+    private final AtomicLong now;
+
+    Manual(long start) {
+
+      this.now = new AtomicLong(start);
+    }
+
+    @Override
+    public long millis() {
+
+      return now.get();
+    }
+
+    public void set(long millis) {
+
+      now.set(millis);
+    }
+
+    public void advance(long millis) {
+
+      now.addAndGet(millis);
+    }
+
+  }
+
+}
@@ -0,0 +1,621 @@
+package com.trigram.zero.flow;
+
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * 按字节解析CSV/TSV，支持引号包裹的字段、字段中的分隔符和换行，以及用两个引号表示的引号
+ * <p>
+ * 每条记录都复用同一个{@link Row}，只在回调中有效，需要保留时调用{@link Row#copy()}。
+ * 通过{@link #select(int...)}投影时只有选中的列会被拷贝，其他列只扫描不保存；空行被跳过
+ *
+ * @author Truma
+ * @see ByteSource#toCsv(char)
+ */
+public class CsvReader {
+
+  private static final int START = 0;
+
+  private static final int UNQUOTED = 1;
+
+  private static final int QUOTED = 2;
+
+  private static final int QUOTED_QUOTE = 3;
+
+  /**
+   * 不处理引号时使用的值，不会与任何字节相等
+   */
+  private static final int NO_QUOTE = 256;
+
+  private final ByteSource source;
+
+  private final byte delimiter;
+
+  private int quote;
+
+  private boolean header;
+
+  /**
+   * 原始列号到保存位置的映射，为null时保存所有列
+   */
+  private int[] slots;
+
+  private int selected;
+
+  CsvReader(ByteSource source, char delimiter, int quote) {
+
+    if (!ByteSlice.asciiCompatible(source.charset())) {
+      throw new IllegalArgumentException("charset is not ASCII compatible: " + source.charset());
+    }
+    this.source    = source;
+    this.delimiter = ByteSlice.asciiDelimiter(delimiter);
+    this.quote     = quote;
+  }
+
+  /**
+   * 逗号分隔，双引号包裹
+   *
+   * @param source a {@link com.trigram.zero.flow.ByteSource} object
+   * @return a {@link com.trigram.zero.flow.CsvReader} object
+   */
+  public static CsvReader csv(ByteSource source) {
+
+    return new CsvReader(source, ',', '"');
+  }
+
+  /**
+   * 制表符分隔，不处理引号
+   *
+   * @param source a {@link com.trigram.zero.flow.ByteSource} object
+   * @return a {@link com.trigram.zero.flow.CsvReader} object
+   */
+  public static CsvReader tsv(ByteSource source) {
+
+    return new CsvReader(source, '\t', NO_QUOTE);
+  }
+
+  /**
+   * 指定分隔符，双引号包裹
+   *
+   * @param source a {@link com.trigram.zero.flow.ByteSource} object
+   * @param delimiter 分隔符，只能是ASCII字符
+   * @return a {@link com.trigram.zero.flow.CsvReader} object
+   */
+  public static CsvReader of(ByteSource source, char delimiter) {
+
+    return new CsvReader(source, delimiter, '"');
+  }
+
+  /**
+   * <p>quote.</p>
+   *
+   * @param quote 包裹字段的引号，只能是ASCII字符
+   * @return this
+   */
+  public CsvReader quote(char quote) {
+
+    this.quote = ByteSlice.asciiDelimiter(quote);
+    return this;
+  }
+
+  /**
+   * 不处理引号，引号作为普通字符
+   *
+   * @return this
+   */
+  public CsvReader noQuote() {
+
+    this.quote = NO_QUOTE;
+    return this;
+  }
+
+  /**
+   * 跳过第一条记录
+   *
+   * @return this
+   */
+  public CsvReader skipHeader() {
+
+    this.header = true;
+    return this;
+  }
+
+  /**
+   * 只保存选中的列，{@link Row}仍然按原始列号访问
+   *
+   * @param columns 原始列号
+   * @return this
+   */
+  public CsvReader select(int... columns) {
+
+    int max = -1;
+    for (int col : columns) {
+      if (col < 0) {
+        throw new IllegalArgumentException("negative column " + col);
+      }
+      max = Math.max(max, col);
+    }
+    int[] map = new int[max + 1];
+    Arrays.fill(map, -1);
+    int n = 0;
+    for (int col : columns) {
+      if (map[col] < 0) {
+        map[col] = n++;
+      }
+    }
+    this.slots    = map;
+    this.selected = n;
+    return this;
+  }
+
+  /**
+   * 顺序解析所有记录
+   *
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  public ZeroFlow<Row> rows() {
+
+    return c -> source.use(is -> {
+      Parser parser = new Parser(c, header);
+      byte[] buf    = new byte[1 << 16];
+      int    n;
+      while ((n = is.read(buf, 0, buf.length)) >= 0) {
+        parser.feed(buf, 0, n);
+      }
+      parser.finish();
+    });
+  }
+
+  /**
+   * 把文件按换行对齐切块，每块在{@link Async}中各自解析，再按块的顺序输出
+   * <p>
+   * 要求引号包裹的字段中没有换行，否则切块的位置可能落在字段中间；
+   * 有{@link ByteSource#path()}的数据源在遍历时按原字符集映射文件后切块，其他数据源退化为{@link #rows()}
+   *
+   * @param async 解析使用的线程
+   * @param chunkBytes 每块的大约字节数
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  public ZeroFlow<Row> parallelRows(Async async, int chunkBytes) {
+
+    Path path = source.path();
+    if (path == null) {
+      return rows();
+    }
+    int parallelism = Runtime.getRuntime().availableProcessors() * 2;
+    return c -> {
+      MappedByteSource mapped = source instanceof MappedByteSource
+          ? (MappedByteSource) source
+          : ByteSource.mapped(path).withCharset(source.charset());
+      Row row = new Row(this);
+      AsyncWindow.map(mapped.chunks(chunkBytes), parallelism, 0, true, (long[] range) -> {
+        CompletableFuture<RowBlock> future = new CompletableFuture<>();
+        async.submit(() -> {
+          try {
+            future.complete(parse(mapped, range[0], range[1]));
+          } catch (Throwable e) {
+            future.completeExceptionally(e);
+          }
+        });
+        return future;
+      }).consume(block -> block.replay(row, c));
+    };
+  }
+
+  private RowBlock parse(MappedByteSource mapped, long from, long to) {
+
+    RowBlock block  = new RowBlock();
+    Parser   parser = new Parser(block::append, header && from == 0);
+    byte[]   buf    = new byte[(int) Math.min(1 << 16, to - from)];
+    for (long pos = from; pos < to; ) {
+      int n = (int) Math.min(buf.length, to - pos);
+      mapped.copy(pos, buf, 0, n);
+      parser.feed(buf, 0, n);
+      pos += n;
+    }
+    parser.finish();
+    return block;
+  }
+
+  private class Parser {
+
+    private final Row row = new Row(CsvReader.this);
+
+    private final Consumer<Row> consumer;
+
+    private boolean skip;
+
+    private int state = START;
+
+    private int col;
+
+    private int slot;
+
+    private boolean blank = true;
+
+    Parser(Consumer<Row> consumer, boolean skip) {
+
+      this.consumer = consumer;
+      this.skip     = skip;
+      beginField();
+    }
+
+    void feed(byte[] buf, int from, int to) {
+
+      for (int i = from; i < to; i++) {
+        byte b = buf[i];
+        switch (state) {
+          case START:
+            if (b == quote) {
+              blank = false;
+              state = QUOTED;
+            } else if (b == delimiter) {
+              blank = false;
+              endField();
+            } else if (b == '\n') {
+              endRecord();
+            } else {
+              if (b != '\r') {
+                blank = false;
+              }
+              append(b);
+              state = UNQUOTED;
+            }
+            break;
+          case UNQUOTED:
+            if (b == delimiter) {
+              endField();
+            } else if (b == '\n') {
+              trimCr();
+              endRecord();
+            } else {
+              if (b != '\r') {
+                blank = false;
+              }
+              append(b);
+            }
+            break;
+          case QUOTED:
+            if (b == quote) {
+              state = QUOTED_QUOTE;
+            } else {
+              append(b);
+            }
+            break;
+          default:
+            if (b == quote) {
+              append(b);
+              state = QUOTED;
+            } else if (b == delimiter) {
+              endField();
+            } else if (b == '\n') {
+              endRecord();
+            } else if (b != '\r') {
+              append(b);
+              state = UNQUOTED;
+            }
+        }
+      }
+    }
+
+    void finish() {
+
+      if (state == QUOTED) {
+        throw new IllegalStateException("unterminated quoted field in column " + col);
+      }
+      if (state == UNQUOTED) {
+        trimCr();
+      }
+      if (col > 0 || !blank) {
+        endRecord();
+      }
+    }
+
+    private void beginField() {
+
+      slot = row.slotOf(col);
+      if (slot >= 0) {
+        row.starts[slot] = row.size;
+      }
+    }
+
+    private void append(byte b) {
+
+      if (slot >= 0) {
+        if (row.size == row.data.length) {
+          row.data = Arrays.copyOf(row.data, row.size << 1);
+        }
+        row.data[row.size++] = b;
+      }
+    }
+
+    private void trimCr() {
+
+      if (slot >= 0 && row.size > row.starts[slot] && row.data[row.size - 1] == '\r') {
+        row.size--;
+      }
+    }
+
+    private void endField() {
+
+      if (slot >= 0) {
+        row.ends[slot] = row.size;
+      }
+      col++;
+      state = START;
+      beginField();
+    }
+
+    private void endRecord() {
+
+      endField();
+      row.columns = col;
+      if (!blank) {
+        if (skip) {
+          skip = false;
+        } else {
+          consumer.accept(row);
+        }
+      }
+      row.size = 0;
+      col      = 0;
+      blank    = true;
+      if (slots != null) {
+        Arrays.fill(row.starts, 0);
+        Arrays.fill(row.ends, 0);
+      }
+      beginField();
+    }
+
+  }
+
+  /**
+   * 一条记录，按原始列号访问，投影时访问未选中的列会抛出{@link IllegalArgumentException}
+   */
+  public static class Row {
+
+    private final int[] slots;
+
+    private final Charset charset;
+
+    byte[] data = new byte[256];
+
+    int size;
+
+    int[] starts;
+
+    int[] ends;
+
+    int columns;
+
+    private ByteSlice[] views;
+
+    Row(CsvReader reader) {
+
+      this(reader.slots, reader.source.charset(), reader.slots == null ? 16 : reader.selected);
+    }
+
+    private Row(int[] slots, Charset charset, int capacity) {
+
+      this.slots   = slots;
+      this.charset = charset;
+      this.starts  = new int[Math.max(1, capacity)];
+      this.ends    = new int[starts.length];
+      this.views   = new ByteSlice[starts.length];
+    }
+
+    int slotOf(int col) {
+
+      if (slots == null) {
+        if (col >= starts.length) {
+          int len = Math.max(col + 1, starts.length << 1);
+          starts = Arrays.copyOf(starts, len);
+          ends   = Arrays.copyOf(ends, len);
+          views  = Arrays.copyOf(views, len);
+        }
+        return col;
+      }
+      return col < slots.length ? slots[col] : -1;
+    }
+
+    /**
+     * 保存的列数，投影时为选中的列数，否则为当前记录的列数
+     */
+    int slotCount() {
+
+      return slots == null ? columns : views.length;
+    }
+
+    private int slot(int col) {
+
+      if (col < 0 || col >= columns) {
+        throw new IndexOutOfBoundsException("column " + col + ", columns " + columns);
+      }
+      int slot = slots == null ? col : col < slots.length ? slots[col] : -1;
+      if (slot < 0) {
+        throw new IllegalArgumentException("column " + col + " is not selected");
+      }
+      return slot;
+    }
+
+    /**
+     * <p>columns.</p>
+     *
+     * @return 当前记录的列数，包括未选中的列
+     */
+    public int columns() {
+
+      return columns;
+    }
+
+    /**
+     * <p>isEmpty.</p>
+     *
+     * @param col 原始列号
+     * @return a boolean
+     */
+    public boolean isEmpty(int col) {
+
+      int slot = slot(col);
+      return starts[slot] == ends[slot];
+    }
+
+    /**
+     * 列内容的视图，每列复用同一个视图
+     *
+     * @param col 原始列号
+     * @return a {@link java.lang.CharSequence} object
+     */
+    public CharSequence getCharSequence(int col) {
+
+      int       slot = slot(col);
+      ByteSlice view = views[slot];
+      if (view == null) {
+        views[slot] = view = new ByteSlice(charset);
+      }
+      return view.set(data, starts[slot], ends[slot] - starts[slot]);
+    }
+
+    /**
+     * <p>getString.</p>
+     *
+     * @param col 原始列号
+     * @return a {@link java.lang.String} object
+     */
+    public String getString(int col) {
+
+      int slot = slot(col);
+      return new String(data, starts[slot], ends[slot] - starts[slot], charset);
+    }
+
+    /**
+     * <p>getInt.</p>
+     *
+     * @param col 原始列号
+     * @return an int
+     */
+    public int getInt(int col) {
+
+      int slot = slot(col);
+      return NumberParser.parseInt(data, starts[slot], ends[slot]);
+    }
+
+    /**
+     * <p>getLong.</p>
+     *
+     * @param col 原始列号
+     * @return a long
+     */
+    public long getLong(int col) {
+
+      int slot = slot(col);
+      return NumberParser.parseLong(data, starts[slot], ends[slot]);
+    }
+
+    /**
+     * <p>getDouble.</p>
+     *
+     * @param col 原始列号
+     * @return a double
+     */
+    public double getDouble(int col) {
+
+      int slot = slot(col);
+      return NumberParser.parseDouble(data, starts[slot], ends[slot]);
+    }
+
+    /**
+     * 拷贝出不再被复用的记录
+     *
+     * @return a {@link com.trigram.zero.flow.CsvReader.Row} object
+     */
+    public Row copy() {
+
+      int n   = slotCount();
+      Row res = new Row(slots, charset, n);
+      res.columns = columns;
+      for (int s = 0; s < n; s++) {
+        int from = Math.min(starts[s], ends[s]), len = ends[s] - from;
+        if (res.size + len > res.data.length) {
+          res.data = Arrays.copyOf(res.data, Math.max(res.size + len, res.data.length << 1));
+        }
+        System.arraycopy(data, from, res.data, res.size, len);
+        res.starts[s] = res.size;
+        res.ends[s]   = res.size += len;
+      }
+      return res;
+    }
+
+    @Override
+    public String toString() {
+
+      StringBuilder sb = new StringBuilder("[");
+      for (int col = 0; col < columns; col++) {
+        int slot = slots == null ? col : col < slots.length ? slots[col] : -1;
+        if (slot >= 0) {
+          if (sb.length() > 1) {
+            sb.append(", ");
+          }
+          sb.append(new String(data, starts[slot], ends[slot] - starts[slot], charset));
+        }
+      }
+      return sb.append(']').toString();
+    }
+
+  }
+
+  /**
+   * 一块中解析出的所有记录，字节连续存放，由消费线程逐条装回复用的{@link Row}
+   */
+  private static class RowBlock {
+
+    private byte[] data = new byte[1 << 12];
+
+    private int size;
+
+    private int[] meta = new int[256];
+
+    private int metaSize;
+
+    void append(Row row) {
+
+      int n = row.slotCount();
+      if (size + row.size > data.length) {
+        data = Arrays.copyOf(data, Math.max(size + row.size, data.length << 1));
+      }
+      if (metaSize + 2 + n * 2 > meta.length) {
+        meta = Arrays.copyOf(meta, Math.max(metaSize + 2 + n * 2, meta.length << 1));
+      }
+      System.arraycopy(row.data, 0, data, size, row.size);
+      meta[metaSize++] = row.columns;
+      meta[metaSize++] = n;
+      for (int s = 0; s < n; s++) {
+        meta[metaSize++] = row.starts[s] + size;
+        meta[metaSize++] = row.ends[s] + size;
+      }
+      size += row.size;
+    }
+
+    void replay(Row row, Consumer<Row> consumer) {
+
+      row.data = data;
+      for (int p = 0; p < metaSize; ) {
+        row.columns = meta[p++];
+        int n = meta[p++];
+        if (n > 0) {
+          row.slotOf(n - 1);
+        }
+        for (int s = 0; s < n; s++) {
+          row.starts[s] = meta[p++];
+          row.ends[s]   = meta[p++];
+        }
+        consumer.accept(row);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,520 @@
+package com.trigram.zero.flow;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 直接编码到字节缓冲的文件写入，缓冲满时整块通过{@link FileChannel}写出
+ * <p>
+ * 数字按字节直接格式化，不经过{@link String#valueOf}；字符按UTF-8编码，ASCII逐字节拷贝。
+ * 指定{@link Async}时使用多个缓冲，一个在编码，其他的排队由后台任务写盘，所有缓冲都在排队时编码方等待空闲的缓冲。
+ * 开启force时每写完一组排队的缓冲调用一次{@link FileChannel#force(boolean)}，多个缓冲共用一次落盘。
+ * 只能在一个线程中写入
+ *
+ * @author Truma
+ * @see ZeroFlow#writeDelimited(Path, char, java.util.function.Function[])
+ */
+public class FileSink implements AutoCloseable {
+
+  /**
+   * 默认的缓冲大小，1MB
+   */
+  public static final int BUFFER_SIZE = 1 << 20;
+
+  private static final double[] POW10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private static final Block END = new Block(null, 0);
+
+  private final FileChannel channel;
+
+  private final Async async;
+
+  private final boolean force;
+
+  private final ArrayBlockingQueue<byte[]> free;
+
+  private final ArrayBlockingQueue<Block> full;
+
+  private final Object task;
+
+  private volatile Throwable error;
+
+  private byte[] buf;
+
+  private int pos;
+
+  private long written;
+
+  private volatile long forced;
+
+  FileSink(Path target, int bufferSize, Async async, int bufferCount, boolean force) {
+
+    if (bufferSize < 64) {
+      throw new IllegalArgumentException("buffer size less than 64");
+    }
+    if (async != null && bufferCount < 2) {
+      throw new IllegalArgumentException("buffer count less than 2");
+    }
+    try {
+      this.channel = FileChannel.open(target,
+          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.async = async;
+    this.force = force;
+    this.buf   = new byte[bufferSize];
+    if (async == null) {
+      this.free = null;
+      this.full = null;
+      this.task = null;
+    } else {
+      this.free = new ArrayBlockingQueue<>(bufferCount - 1);
+      this.full = new ArrayBlockingQueue<>(bufferCount + 1);
+      for (int i = 1; i < bufferCount; i++) {
+        free.offer(new byte[bufferSize]);
+      }
+      this.task = async.submit(this::drain);
+    }
+  }
+
+  /**
+   * 同步写入的文件
+   *
+   * @param target a {@link java.nio.file.Path} object
+   * @return a {@link com.trigram.zero.flow.FileSink} object
+   */
+  public static FileSink open(Path target) {
+
+    return new FileSink(target, BUFFER_SIZE, null, 1, false);
+  }
+
+  /**
+   * 双缓冲的文件，写盘在{@link Async}中进行
+   *
+   * @param target a {@link java.nio.file.Path} object
+   * @param async 写盘使用的线程
+   * @return a {@link com.trigram.zero.flow.FileSink} object
+   */
+  public static FileSink open(Path target, Async async) {
+
+    return new FileSink(target, BUFFER_SIZE, async, 2, false);
+  }
+
+  /**
+   * <p>open.</p>
+   *
+   * @param target a {@link java.nio.file.Path} object
+   * @param async 写盘使用的线程，为null时同步写盘
+   * @param bufferSize 每个缓冲的字节数
+   * @param bufferCount 缓冲的数量，异步时至少为2
+   * @param force 是否在每组缓冲写完后落盘
+   * @return a {@link com.trigram.zero.flow.FileSink} object
+   */
+  public static FileSink open(Path target, Async async, int bufferSize, int bufferCount, boolean force) {
+
+    return new FileSink(target, bufferSize, async, bufferCount, force);
+  }
+
+  /**
+   * <p>put.</p>
+   *
+   * @param b a byte
+   * @return this
+   */
+  public FileSink put(byte b) {
+
+    if (pos == buf.length) {
+      flush();
+    }
+    buf[pos++] = b;
+    return this;
+  }
+
+  /**
+   * <p>put.</p>
+   *
+   * @param bytes a byte array
+   * @param offset 起始位置
+   * @param length 字节数
+   * @return this
+   */
+  public FileSink put(byte[] bytes, int offset, int length) {
+
+    while (length > 0) {
+      if (pos == buf.length) {
+        flush();
+      }
+      int n = Math.min(length, buf.length - pos);
+      System.arraycopy(bytes, offset, buf, pos, n);
+      pos += n;
+      offset += n;
+      length -= n;
+    }
+    return this;
+  }
+
+  /**
+   * 按UTF-8编码写入字符
+   *
+   * @param cs a {@link java.lang.CharSequence} object
+   * @return this
+   */
+  public FileSink put(CharSequence cs) {
+
+    return put(cs, 0, cs.length());
+  }
+
+  /**
+   * 按UTF-8编码写入字符序列的一段
+   *
+   * @param cs a {@link java.lang.CharSequence} object
+   * @param from 起始位置
+   * @param to 结束位置，不包含
+   * @return this
+   */
+  public FileSink put(CharSequence cs, int from, int to) {
+
+    for (int i = from, len = to; i < len; i++) {
+      if (pos + 4 > buf.length) {
+        flush();
+      }
+      char c = cs.charAt(i);
+      if (c < 0x80) {
+        buf[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buf[pos++] = (byte) (0xc0 | c >> 6);
+        buf[pos++] = (byte) (0x80 | c & 0x3f);
+      } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(cs.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, cs.charAt(++i));
+        buf[pos++] = (byte) (0xf0 | cp >> 18);
+        buf[pos++] = (byte) (0x80 | cp >> 12 & 0x3f);
+        buf[pos++] = (byte) (0x80 | cp >> 6 & 0x3f);
+        buf[pos++] = (byte) (0x80 | cp & 0x3f);
+      } else if (Character.isSurrogate(c)) {
+        buf[pos++] = '?';
+      } else {
+        buf[pos++] = (byte) (0xe0 | c >> 12);
+        buf[pos++] = (byte) (0x80 | c >> 6 & 0x3f);
+        buf[pos++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * <p>put.</p>
+   *
+   * @param v an int
+   * @return this
+   */
+  public FileSink put(int v) {
+
+    return put((long) v);
+  }
+
+  /**
+   * 按十进制写入整数
+   *
+   * @param v a long
+   * @return this
+   */
+  public FileSink put(long v) {
+
+    if (pos + 20 > buf.length) {
+      flush();
+    }
+    if (v == Long.MIN_VALUE) {
+      return put("-9223372036854775808");
+    }
+    if (v < 0) {
+      buf[pos++] = '-';
+      v = -v;
+    }
+    int digits = 1;
+    for (long t = v; t >= 10; t /= 10) {
+      digits++;
+    }
+    for (int i = pos + digits - 1; i >= pos; i--, v /= 10) {
+      buf[i] = (byte) ('0' + v % 10);
+    }
+    pos += digits;
+    return this;
+  }
+
+  /**
+   * 写入能精确读回原值的十进制小数，绝对值在[1e-3, 1e7)之间时直接格式化，其他值使用{@link Double#toString(double)}
+   *
+   * @param v a double
+   * @return this
+   */
+  public FileSink put(double v) {
+
+    double abs = Math.abs(v);
+    if (abs >= 1e-3 && abs < 1e7) {
+      for (int k = 0; k < POW10.length && abs * POW10[k] < 1L << 53; k++) {
+        long m = Math.round(abs * POW10[k]);
+        if (m / POW10[k] == abs) {
+          if (v < 0) {
+            put((byte) '-');
+          }
+          putDecimal(m, k);
+          return this;
+        }
+      }
+    }
+    return put(Double.toString(v));
+  }
+
+  /**
+   * 写入能精确读回原值的最短十进制小数，按float的精度判断，0.1f写为0.1而不是0.10000000149011612
+   *
+   * @param v a float
+   * @return this
+   */
+  public FileSink put(float v) {
+
+    float abs = Math.abs(v);
+    if (abs >= 1e-3f && abs < 1e7f) {
+      for (int k = 0; k < POW10.length && abs * POW10[k] < 1L << 53; k++) {
+        long m = Math.round(abs * POW10[k]);
+        if ((float) (m / POW10[k]) == abs) {
+          if (v < 0) {
+            put((byte) '-');
+          }
+          putDecimal(m, k);
+          return this;
+        }
+      }
+    }
+    return put(Float.toString(v));
+  }
+
+  private void putDecimal(long m, int scale) {
+
+    if (scale == 0) {
+      put(m);
+      put((byte) '.');
+      put((byte) '0');
+      return;
+    }
+    long unit = (long) POW10[scale];
+    put(m / unit);
+    put((byte) '.');
+    long frac = m % unit;
+    for (long u = unit / 10; u > frac && u > 1; u /= 10) {
+      put((byte) '0');
+    }
+    put(frac);
+  }
+
+  /**
+   * 写入一个分隔文本的字段，数字直接格式化，含有分隔符、引号或者换行的文本用引号包裹，null写为空
+   *
+   * @param value a {@link java.lang.Object} object
+   * @param delimiter 分隔符
+   * @return this
+   */
+  FileSink putField(Object value, byte delimiter) {
+
+    if (value == null) {
+      return this;
+    }
+    if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+      return put(((Number) value).longValue());
+    }
+    if (value instanceof Double) {
+      return put((double) (Double) value);
+    }
+    if (value instanceof Float) {
+      return put((float) (Float) value);
+    }
+    CharSequence cs = value instanceof CharSequence ? (CharSequence) value : value.toString();
+    for (int i = 0, len = cs.length(); i < len; i++) {
+      char c = cs.charAt(i);
+      if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+        put((byte) '"');
+        int start = 0;
+        for (int j = 0; j < len; j++) {
+          if (cs.charAt(j) == '"') {
+            put(cs, start, j + 1).put((byte) '"');
+            start = j + 1;
+          }
+        }
+        return put(cs, start, len).put((byte) '"');
+      }
+    }
+    return put(cs);
+  }
+
+  /**
+   * <p>written.</p>
+   *
+   * @return 已经交给写盘的字节数，不包括当前缓冲中的内容
+   */
+  public long written() {
+
+    return written;
+  }
+
+  /**
+   * <p>forced.</p>
+   *
+   * @return 已经调用{@link FileChannel#force(boolean)}的次数，异步时每组排队的缓冲只计一次
+   */
+  public long forced() {
+
+    return forced;
+  }
+
+  /**
+   * 把当前缓冲整块写出，双缓冲时交给后台任务后换一个空闲的缓冲
+   */
+  public void flush() {
+
+    if (pos == 0) {
+      return;
+    }
+    written += pos;
+    if (async == null) {
+      write(buf, pos);
+      if (force) {
+        force();
+        forced++;
+      }
+      pos = 0;
+      return;
+    }
+    checkError();
+    try {
+      full.put(new Block(buf, pos));
+      buf = free.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    pos = 0;
+  }
+
+  /**
+   * 写出剩余的内容，等待后台任务结束后关闭文件，重新抛出写盘时遇到的异常
+   * <p>
+   * 写出失败时也会通知后台任务结束并关闭文件；排队的队列比缓冲数多一个位置，结束标记总能放入
+   */
+  @Override
+  public void close() {
+
+    try {
+      flush();
+    } finally {
+      try {
+        if (async != null) {
+          full.offer(END);
+          async.join(task);
+        }
+      } finally {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          error = error == null ? e : error;
+        }
+      }
+    }
+    checkError();
+  }
+
+  private void drain() {
+
+    List<Block> group = new ArrayList<>();
+    try {
+      boolean end = false;
+      while (!end) {
+        group.add(full.take());
+        full.drainTo(group);
+        boolean dirty = false;
+        for (Block block : group) {
+          if (block == END) {
+            end = true;
+          } else if (error == null) {
+            try {
+              write(block.data, block.length);
+              dirty = true;
+            } catch (Throwable e) {
+              error = e;
+            }
+          }
+        }
+        if (force && dirty && error == null) {
+          try {
+            force();
+            forced++;
+          } catch (Throwable e) {
+            error = e;
+          }
+        }
+        for (Block block : group) {
+          if (block != END) {
+            free.put(block.data);
+          }
+        }
+        group.clear();
+      }
+    } catch (InterruptedException e) {
+      error = e;
+    }
+  }
+
+  private void force() {
+
+    try {
+      channel.force(false);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void write(byte[] data, int length) {
+
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void checkError() {
+
+    Throwable e = error;
+    if (e != null) {
+      throw BatchChannel.rethrow(e);
+    }
+  }
+
+  private static final class Block {
+
+    final byte[] data;
+
+    final int length;
+
+    Block(byte[] data, int length) {
+
+      this.data   = data;
+      this.length = length;
+    }
+
+  }
+
+}
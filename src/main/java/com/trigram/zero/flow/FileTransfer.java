@@ -0,0 +1,100 @@
+package com.trigram.zero.flow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件之间的传输，本地文件通过{@link FileChannel#transferTo}交给内核完成，数据不经过堆
+ *
+ * @author Truma
+ * @see ByteSource#write(Path, long, long)
+ * @see ByteSource#concat(Path, ByteSource...)
+ */
+final class FileTransfer {
+
+  private FileTransfer() {
+
+  }
+
+  /**
+   * 目标是否与数据源是同一个文件，相对路径、符号链接和硬链接都按文件本身比较
+   *
+   * @param target 目标文件
+   * @param path 数据源的路径，为null时不是本地文件
+   * @return a boolean
+   */
+  static boolean sameFile(Path target, Path path) {
+
+    try {
+      return path != null && Files.exists(target) && Files.isSameFile(target, path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static FileChannel create(Path target) throws IOException {
+
+    return FileChannel.open(target,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+  }
+
+  /**
+   * 把数据源的一段追加到目标的当前位置，文件通过transferTo，其他数据源逐块拷贝
+   *
+   * @return 实际写入的字节数，超出数据源末尾的部分被忽略
+   */
+  static long append(ByteSource source, long offset, long length, FileChannel target) throws IOException {
+
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("negative offset or length");
+    }
+    Path path = source.path();
+    if (path == null) {
+      long[] res = {0};
+      source.use(is -> res[0] = copy(is, offset, length, target));
+      return res[0];
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size(), pos = offset;
+      long end  = offset >= size ? offset : offset + Math.min(length, size - offset);
+      while (pos < end) {
+        long n = channel.transferTo(pos, end - pos, target);
+        if (n <= 0) {
+          break;
+        }
+        pos += n;
+      }
+      return Math.max(0, pos - offset);
+    }
+  }
+
+  private static long copy(InputStream is, long offset, long length, FileChannel target) throws IOException {
+
+    for (long skipped = 0, n; skipped < offset; skipped += n) {
+      if ((n = is.skip(offset - skipped)) <= 0) {
+        if (is.read() < 0) {
+          return 0;
+        }
+        n = 1;
+      }
+    }
+    byte[] buf   = new byte[(int) Math.min(1 << 16, Math.max(1, length))];
+    long   total = 0;
+    int    n;
+    while (total < length && (n = is.read(buf, 0, (int) Math.min(buf.length, length - total))) >= 0) {
+      ByteBuffer buffer = ByteBuffer.wrap(buf, 0, n);
+      while (buffer.hasRemaining()) {
+        target.write(buffer);
+      }
+      total += n;
+    }
+    return total;
+  }
+
+}
@@ -0,0 +1,392 @@
+package com.trigram.zero.flow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * gzip和zlib的流水线压缩与解压，编解码在独立的线程中进行，结果以大块经过{@link BlockPipe}交给读取方
+ * <p>
+ * 并行压缩把输入切成不超过{@link #MEMBER_INPUT}字节的块，每块压缩为一个独立的gzip成员，
+ * 头部的额外字段'BC'记录成员的字节数（与BGZF格式相同），普通的gzip工具仍然可以按多成员文件解压。
+ * 并行解压依靠这个字段在不解压的情况下找到成员的边界，没有这个字段的部分按顺序解压
+ *
+ * @author Truma
+ * @see ByteSource#gunzip(Async)
+ * @see ByteSource#gzip(Async)
+ */
+final class GzipCodec {
+
+  static final int MEMBER_INPUT = 0xff00;
+
+  static final int CHUNK_MEMBERS = 16;
+
+  private static final int MAX_MEMBER = 1 << 16;
+
+  private static final int HEADER = 18;
+
+  private static final int TRAILER = 8;
+
+  private static final int STREAM_BUFFER = 1 << 16;
+
+  private GzipCodec() {
+
+  }
+
+  static InputStream gunzip(ByteSource source) {
+
+    return BlockPipe.start(Async.daemon(), out -> source.use(is -> {
+      try (InputStream in = new GZIPInputStream(is, STREAM_BUFFER)) {
+        copy(in, out);
+      }
+    }));
+  }
+
+  static InputStream inflate(ByteSource source) {
+
+    return BlockPipe.start(Async.daemon(), out -> source.use(is -> {
+      try (InputStream in = new InflaterInputStream(is, new Inflater(), STREAM_BUFFER)) {
+        copy(in, out);
+      }
+    }));
+  }
+
+  static InputStream gzip(ByteSource source) {
+
+    return BlockPipe.start(Async.daemon(), out -> source.use(is -> {
+      try (GZIPOutputStream gz = new GZIPOutputStream(out, STREAM_BUFFER)) {
+        copy(is, gz);
+      }
+    }));
+  }
+
+  static InputStream deflate(ByteSource source) {
+
+    return BlockPipe.start(Async.daemon(), out -> source.use(is -> {
+      try (DeflaterOutputStream def = new DeflaterOutputStream(out, new Deflater(), STREAM_BUFFER)) {
+        copy(is, def);
+      }
+    }));
+  }
+
+  /**
+   * 多个块同时压缩，按输入顺序写出，最后写一个空的成员作为结束标记
+   */
+  static InputStream gzip(ByteSource source, Async async) {
+
+    ZeroFlow<byte[]> chunks = c -> source.use(is -> {
+      for (byte[] chunk; (chunk = readChunk(is, MEMBER_INPUT * CHUNK_MEMBERS)).length > 0; ) {
+        c.accept(chunk);
+      }
+    });
+    return BlockPipe.start(Async.daemon(), out -> {
+      AsyncWindow.map(chunks, parallelism(), 0, true, (byte[] chunk) -> supply(async, () -> compress(chunk)))
+          .consume(bytes -> out.write(bytes, 0, bytes.length));
+      byte[] eof = compress(new byte[0]);
+      out.write(eof, 0, eof.length);
+    });
+  }
+
+  /**
+   * 本地文件的成员带有'BC'字段时按成员分组并行解压，从第一个不带该字段的成员开始按顺序解压
+   */
+  static InputStream gunzip(ByteSource source, Async async) {
+
+    if (source.path() == null) {
+      return gunzip(source);
+    }
+    MappedByteSource mapped = source instanceof MappedByteSource
+        ? (MappedByteSource) source
+        : ByteSource.mapped(source.path());
+    if (memberSize(mapped, 0) < 0) {
+      return gunzip(mapped);
+    }
+    long[] tail = {mapped.size()};
+    ZeroFlow<long[]> chunks = c -> {
+      long pos = 0, size = mapped.size();
+      while (pos < size) {
+        long start = pos;
+        for (int i = 0; i < CHUNK_MEMBERS && pos < size; i++) {
+          int n = memberSize(mapped, pos);
+          if (n < 0) {
+            tail[0] = pos;
+            break;
+          }
+          pos += n;
+        }
+        if (pos > start) {
+          c.accept(new long[]{start, pos});
+        }
+        if (tail[0] < size) {
+          break;
+        }
+      }
+    };
+    return BlockPipe.start(Async.daemon(), out -> {
+      AsyncWindow.map(chunks, parallelism(), 0, true, (long[] range) -> supply(async, () -> {
+        byte[] data = new byte[(int) (range[1] - range[0])];
+        mapped.copy(range[0], data, 0, data.length);
+        return inflateMembers(data);
+      })).consume(bytes -> out.write(bytes, 0, bytes.length));
+      if (tail[0] < mapped.size()) {
+        mapped.use(is -> {
+          long skip = tail[0];
+          while (skip > 0) {
+            skip -= is.skip(skip);
+          }
+          copy(new GZIPInputStream(is, STREAM_BUFFER), out);
+        });
+      }
+    });
+  }
+
+  /**
+   * 成员头部'BC'字段记录的成员字节数
+   *
+   * @return 不是gzip成员或者没有该字段时为-1
+   */
+  static int memberSize(MappedByteSource mapped, long pos) {
+
+    if (mapped.size() - pos < HEADER + TRAILER) {
+      return -1;
+    }
+    byte[] header = new byte[12];
+    mapped.copy(pos, header, 0, header.length);
+    if (!isMember(header, 0) || (header[3] & 4) == 0) {
+      return -1;
+    }
+    int xlen = u16(header, 10);
+    if (mapped.size() - pos < 12 + xlen) {
+      return -1;
+    }
+    byte[] extra = new byte[xlen];
+    mapped.copy(pos + 12, extra, 0, xlen);
+    int size = blockSize(extra, 0, xlen);
+    return size < 0 || pos + size > mapped.size() ? -1 : size;
+  }
+
+  /**
+   * 解压若干个完整的带'BC'字段的成员，输出的大小由各成员的ISIZE预先算出，校验每个成员的CRC32
+   * <p>
+   * ISIZE来自输入，分配之前先检查每个成员不超过{@link #MAX_MEMBER}，总和不超过数组的上限
+   */
+  static byte[] inflateMembers(byte[] data) throws IOException {
+
+    long total = 0;
+    for (int p = 0; p < data.length; p += memberSize(data, p)) {
+      int length = i32(data, p + memberSize(data, p) - 4);
+      if (length < 0 || length > MAX_MEMBER) {
+        throw new ZipException("Invalid GZIP member size: " + (length & 0xffffffffL));
+      }
+      total += length;
+    }
+    if (total > Integer.MAX_VALUE - 8) {
+      throw new ZipException("GZIP members too large: " + total);
+    }
+    byte[]   out      = new byte[(int) total];
+    Inflater inflater = new Inflater(true);
+    CRC32    crc      = new CRC32();
+    try {
+      for (int p = 0, o = 0; p < data.length; ) {
+        int size   = memberSize(data, p);
+        int header = headerLength(data, p, p + size);
+        int length = i32(data, p + size - 4);
+        inflater.reset();
+        inflater.setInput(data, p + header, size - header - TRAILER);
+        int n = 0;
+        try {
+          while (n < length) {
+            int r = inflater.inflate(out, o + n, length - n);
+            if (r == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+              break;
+            }
+            n += r;
+          }
+        } catch (DataFormatException e) {
+          throw new ZipException(e.getMessage());
+        }
+        crc.reset();
+        crc.update(out, o, n);
+        if (n != length || (int) crc.getValue() != i32(data, p + size - TRAILER)) {
+          throw new ZipException("Corrupt GZIP trailer");
+        }
+        p += size;
+        o += length;
+      }
+    } finally {
+      inflater.end();
+    }
+    return out;
+  }
+
+  /**
+   * 把一块输入压缩为若干个带'BC'字段的成员
+   */
+  static byte[] compress(byte[] chunk) {
+
+    ByteArrayOutputStream out      = new ByteArrayOutputStream(chunk.length / 2 + 64);
+    Deflater              deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    byte[]                buf      = new byte[MAX_MEMBER];
+    CRC32                 crc      = new CRC32();
+    try {
+      int off = 0;
+      do {
+        int len = Math.min(MEMBER_INPUT, chunk.length - off);
+        member(deflater, crc, chunk, off, len, buf, out);
+        off += len;
+      } while (off < chunk.length);
+    } finally {
+      deflater.end();
+    }
+    return out.toByteArray();
+  }
+
+  private static void member(Deflater deflater, CRC32 crc, byte[] in, int off, int len, byte[] buf,
+      ByteArrayOutputStream out) {
+
+    deflater.reset();
+    deflater.setInput(in, off, len);
+    deflater.finish();
+    int limit = MAX_MEMBER - HEADER - TRAILER, n = 0;
+    while (!deflater.finished() && n < limit) {
+      n += deflater.deflate(buf, n, limit - n);
+    }
+    if (!deflater.finished()) {
+      member(deflater, crc, in, off, len / 2, buf, out);
+      member(deflater, crc, in, off + len / 2, len - len / 2, buf, out);
+      return;
+    }
+    int size = HEADER + n + TRAILER;
+    out.write(new byte[]{
+        0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0,
+        'B', 'C', 2, 0, (byte) (size - 1), (byte) ((size - 1) >>> 8)
+    }, 0, HEADER);
+    out.write(buf, 0, n);
+    crc.reset();
+    crc.update(in, off, len);
+    byte[] trailer = new byte[TRAILER];
+    put32(trailer, 0, (int) crc.getValue());
+    put32(trailer, 4, len);
+    out.write(trailer, 0, TRAILER);
+  }
+
+  private static int memberSize(byte[] data, int p) throws ZipException {
+
+    if (data.length - p < 12 || !isMember(data, p) || (data[p + 3] & 4) == 0) {
+      throw new ZipException("Not in GZIP format");
+    }
+    int size = blockSize(data, p + 12, u16(data, p + 10));
+    if (size < 0 || p + size > data.length) {
+      throw new ZipException("Corrupt GZIP header");
+    }
+    return size;
+  }
+
+  private static int headerLength(byte[] b, int p, int end) throws ZipException {
+
+    int flags = b[p + 3] & 0xff, q = p + 10;
+    if ((flags & 4) != 0) {
+      q += 2 + u16(b, q);
+    }
+    for (int flag = 8; flag <= 16; flag <<= 1) {
+      if ((flags & flag) != 0) {
+        while (q < end && b[q] != 0) {
+          q++;
+        }
+        q++;
+      }
+    }
+    if ((flags & 2) != 0) {
+      q += 2;
+    }
+    if (q > end - TRAILER) {
+      throw new ZipException("Corrupt GZIP header");
+    }
+    return q - p;
+  }
+
+  private static int blockSize(byte[] extra, int from, int length) {
+
+    for (int q = from, end = from + length; q + 4 <= end; q += 4 + u16(extra, q + 2)) {
+      if (extra[q] == 'B' && extra[q + 1] == 'C' && u16(extra, q + 2) == 2 && q + 6 <= end) {
+        return u16(extra, q + 4) + 1;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isMember(byte[] b, int p) {
+
+    return b[p] == 0x1f && b[p + 1] == (byte) 0x8b && b[p + 2] == 8;
+  }
+
+  private static int u16(byte[] b, int p) {
+
+    return b[p] & 0xff | (b[p + 1] & 0xff) << 8;
+  }
+
+  private static int i32(byte[] b, int p) {
+
+    return u16(b, p) | u16(b, p + 2) << 16;
+  }
+
+  private static void put32(byte[] b, int p, int v) {
+
+    b[p]     = (byte) v;
+    b[p + 1] = (byte) (v >>> 8);
+    b[p + 2] = (byte) (v >>> 16);
+    b[p + 3] = (byte) (v >>> 24);
+  }
+
+  private static byte[] readChunk(InputStream is, int size) throws IOException {
+
+    byte[] chunk = new byte[size];
+    int    n     = 0;
+    for (int r; n < size && (r = is.read(chunk, n, size - n)) >= 0; ) {
+      n += r;
+    }
+    return n == size ? chunk : Arrays.copyOf(chunk, n);
+  }
+
+  private static void copy(InputStream in, OutputStream out) throws IOException {
+
+    byte[] buf = new byte[STREAM_BUFFER];
+    for (int n; (n = in.read(buf)) >= 0; ) {
+      out.write(buf, 0, n);
+    }
+  }
+
+  private static int parallelism() {
+
+    return Runtime.getRuntime().availableProcessors() * 2;
+  }
+
+  private static <E> CompletableFuture<E> supply(Async async, IOChain<E> task) {
+
+    CompletableFuture<E> future = new CompletableFuture<>();
+    async.submit(() -> {
+      try {
+        future.complete(task.call());
+      } catch (IOException e) {
+        future.completeExceptionally(new UncheckedIOException(e));
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
+  }
+
+}
@@ -1,5 +1,6 @@
 package com.trigram.zero.flow;
 
+import com.trigram.zero.flow.iterators.CloseableItr;
 import com.trigram.zero.flow.iterators.MapItr;
 import com.trigram.zero.flow.iterators.PickItr;
 import java.io.InputStream;
@@ -22,6 +23,18 @@ import java.util.stream.StreamSupport;
  */
 public interface ItrUtil {
 
+  /**
+   * 迭代器是{@link CloseableItr}时关闭它，用于提前结束的遍历释放背后的线程
+   *
+   * @param iterator a {@link java.util.Iterator} object
+   */
+  static void close(Iterator<?> iterator) {
+
+    if (iterator instanceof CloseableItr) {
+      ((CloseableItr<?>) iterator).close();
+    }
+  }
+
   /**
    * 包装一个删除前面n个数据的迭代器
    *
@@ -1,5 +1,6 @@
 package com.trigram.zero.flow;
 
+import com.trigram.zero.flow.iterators.CloseableItr;
 import com.trigram.zero.flow.iterators.MapItr;
 import com.trigram.zero.flow.iterators.PickItr;
 import java.util.Iterator;
@@ -51,6 +52,28 @@ public interface ItrZeroFlow<T> extends Iterable<T>, ZeroFlow<T> {
     return this;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * 本身可以迭代，不需要后台线程
+   */
+  @Override
+  default ItrZeroFlow<T> asIterable(int bufferSize) {
+
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * 本身可以迭代，不需要后台线程
+   */
+  @Override
+  default CloseableItr<T> iterator(Async async, int bufferSize) {
+
+    return CloseableItr.of(iterator());
+  }
+
   /** {@inheritDoc} */
   @Override
   default <E> ItrZeroFlow<E> map(Function<T, E> function) {
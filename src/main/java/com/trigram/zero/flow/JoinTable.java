@@ -0,0 +1,132 @@
+package com.trigram.zero.flow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * 哈希连接中构建侧的哈希表
+ * <p>
+ * key只对应一个数据时直接存放数据本身，出现重复key时才升级成列表，避免每个key都分配一个列表
+ *
+ * @param <K>
+ *     连接的key
+ * @param <E>
+ *     构建侧的数据
+ * @author Truma
+ */
+public class JoinTable<K, E> {
+
+  private static final Object NULL = new Object();
+
+  private final HashMap<K, Object> map;
+
+  /**
+   * <p>Constructor for JoinTable.</p>
+   *
+   * @param expectedSize
+   *     预计的数据量，用于预先分配哈希表容量
+   */
+  public JoinTable(int expectedSize) {
+
+    map = new HashMap<>(capacity(expectedSize));
+  }
+
+  /**
+   * 按照预计的数据量计算不会触发扩容的哈希表容量
+   *
+   * @param expectedSize a int
+   * @return a int
+   */
+  static int capacity(int expectedSize) {
+
+    return expectedSize < 3 ? 4 : (int) (expectedSize / 0.75f + 1.0f);
+  }
+
+  /**
+   * 放入一个数据，key为null的数据永远不会被匹配，直接忽略
+   *
+   * @param key a K object
+   * @param e a E object
+   */
+  @SuppressWarnings("unchecked")
+  public void put(K key, E e) {
+
+    if (key == null) {
+      return;
+    }
+    Object value = e == null ? NULL : e;
+    Object old   = map.put(key, value);
+    if (old != null) {
+      Bucket<Object> bucket;
+      if (old instanceof Bucket) {
+        bucket = (Bucket<Object>) old;
+      } else {
+        bucket = new Bucket<>();
+        bucket.add(old);
+      }
+      bucket.add(value);
+      map.put(key, bucket);
+    }
+  }
+
+  /**
+   * 是否存在对应的key
+   *
+   * @param key a K object
+   * @return a boolean
+   */
+  public boolean containsKey(K key) {
+
+    return key != null && map.containsKey(key);
+  }
+
+  /**
+   * 消费key对应的所有数据
+   *
+   * @param key a K object
+   * @param consumer a {@link java.util.function.Consumer} object
+   * @return 是否存在匹配的数据
+   */
+  @SuppressWarnings("unchecked")
+  public boolean match(K key, Consumer<E> consumer) {
+
+    if (key == null) {
+      return false;
+    }
+    Object value = map.get(key);
+    if (value == null) {
+      return false;
+    }
+    if (value instanceof Bucket) {
+      for (Object o : (Bucket<Object>) value) {
+        consumer.accept(o == NULL ? null : (E) o);
+      }
+    } else {
+      consumer.accept(value == NULL ? null : (E) value);
+    }
+    return true;
+  }
+
+  /**
+   * 不同key的数量
+   *
+   * @return a int
+   */
+  public int keySize() {
+
+    return map.size();
+  }
+
+  private static final class Bucket<E> extends ArrayList<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    Bucket() {
+
+      super(4);
+    }
+
+  }
+
+}
@@ -0,0 +1,114 @@
+package com.trigram.zero.flow;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 按key分区的一组单线程处理通道
+ * <p>
+ * 数据按key的hash分到固定的通道，每个通道由一个线程按顺序处理，因此同一个key的数据总是在同一个线程上按原顺序处理，
+ * key对应的状态不需要加锁；不同key之间并行。每个通道的缓冲有界，处理慢时数据源会被阻塞
+ *
+ * @author Truma
+ * @see ZeroFlow#partitionBy(Async, Function, int, Consumer)
+ */
+public class LaneGroup<T> {
+
+  private final Async async;
+
+  private final BatchChannel<T>[] lanes;
+
+  private final Object[] tasks;
+
+  private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+  LaneGroup(Async async, ZeroFlow<T> source, Function<T, ?> toKey, int partitions, int bufferSize, Consumer<T> consumer) {
+
+    if (partitions <= 0) {
+      throw new IllegalArgumentException("non-positive partitions");
+    }
+    this.async = async;
+    this.lanes = BatchChannel.array(partitions);
+    this.tasks = new Object[partitions + 1];
+    for (int i = 0; i < partitions; i++) {
+      BatchChannel<T> lane = lanes[i] = new BatchChannel<>(bufferSize);
+      tasks[i] = async.submit(() -> {
+        try {
+          lane.consume(consumer);
+        } catch (Throwable e) {
+          error.compareAndSet(null, e);
+        }
+      });
+    }
+    tasks[partitions] = async.submit(() -> {
+      try {
+        source.consumeTillStop(t -> {
+          Object k = toKey.apply(t);
+          int    h = k == null ? 0 : k.hashCode();
+          if (!lanes[Math.floorMod(h ^ h >>> 16, partitions)].offer(t)) {
+            ZeroFlow.stop();
+          }
+        });
+        for (BatchChannel<T> lane : lanes) {
+          lane.complete();
+        }
+      } catch (Throwable e) {
+        error.compareAndSet(null, e);
+        for (BatchChannel<T> lane : lanes) {
+          lane.fail(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * 等待数据源遍历完、所有通道处理完，重新抛出遇到的第一个异常
+   */
+  public void join() {
+
+    for (Object task : tasks) {
+      async.join(task);
+    }
+    Throwable e = error.get();
+    if (e != null) {
+      throw BatchChannel.rethrow(e);
+    }
+  }
+
+  /**
+   * <p>size.</p>
+   *
+   * @return 通道的数量
+   */
+  public int size() {
+
+    return lanes.length;
+  }
+
+  /**
+   * 通道中排队等待处理的数据量，按批次更新，不包括数据源正在攒的批次
+   *
+   * @param lane 通道的下标
+   * @return a long
+   */
+  public long depth(int lane) {
+
+    return lanes[lane].depth();
+  }
+
+  /**
+   * 所有通道排队等待处理的数据量
+   *
+   * @return an array of {@link long} objects
+   */
+  public long[] depths() {
+
+    long[] res = new long[lanes.length];
+    for (int i = 0; i < res.length; i++) {
+      res[i] = lanes[i].depth();
+    }
+    return res;
+  }
+
+}
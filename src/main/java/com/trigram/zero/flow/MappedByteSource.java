@@ -0,0 +1,418 @@
+package com.trigram.zero.flow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 通过{@link FileChannel#map}映射到内存的文件，数据由操作系统的页缓存提供，读取时不经过堆内的缓冲
+ * <p>
+ * 单个映射最大不超过2GB，更大的文件按段映射。按行或者按分隔符遍历时直接在映射上查找分隔符，
+ * 只有跨越两段的记录需要拼接到堆内。映射在创建时完成，文件之后被截断时读取会出错，适合只读的大文件
+ *
+ * @author Truma
+ * @see ByteSource#mapped(Path)
+ */
+public class MappedByteSource implements ByteSource {
+
+  /**
+   * 默认的段大小，1GB
+   */
+  public static final int SEGMENT_SIZE = 1 << 30;
+
+  private final Path path;
+
+  private final ByteBuffer[] segments;
+
+  private final int segmentSize;
+
+  private final long size;
+
+  private final Charset charset;
+
+  MappedByteSource(Path path, ByteBuffer[] segments, int segmentSize, long size, Charset charset) {
+
+    this.path        = path;
+    this.segments    = segments;
+    this.segmentSize = segmentSize;
+    this.size        = size;
+    this.charset     = charset;
+  }
+
+  /**
+   * 按指定的段大小映射文件
+   *
+   * @param path a {@link java.nio.file.Path} object
+   * @param segmentSize 单个映射的字节数
+   * @return a {@link com.trigram.zero.flow.MappedByteSource} object
+   */
+  public static MappedByteSource of(Path path, int segmentSize) {
+
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("non-positive segment size");
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long         size     = channel.size();
+      ByteBuffer[] segments = new ByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+      for (int i = 0; i < segments.length; i++) {
+        long pos = (long) i * segmentSize;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(segmentSize, size - pos));
+      }
+      return new MappedByteSource(path, segments, segmentSize, size, Charset.defaultCharset());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * <p>path.</p>
+   *
+   * @return 映射的文件
+   */
+  @Override
+  public Path path() {
+
+    return path;
+  }
+
+  /**
+   * <p>size.</p>
+   *
+   * @return 文件的字节数
+   */
+  public long size() {
+
+    return size;
+  }
+
+  /**
+   * 按顺序遍历各段映射的只读视图
+   *
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  public ZeroFlow<ByteBuffer> segments() {
+
+    return c -> {
+      for (ByteBuffer segment : segments) {
+        c.accept(segment.asReadOnlyBuffer());
+      }
+    };
+  }
+
+  /**
+   * 文件中一段区间的只读视图，区间跨越两段映射时拷贝到堆内
+   *
+   * @param offset 起始位置
+   * @param length 字节数
+   * @return a {@link java.nio.ByteBuffer} object
+   */
+  public ByteBuffer slice(long offset, int length) {
+
+    if (offset < 0 || length < 0 || offset + length > size) {
+      throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + size);
+    }
+    if (length == 0) {
+      return ByteBuffer.allocate(0).asReadOnlyBuffer();
+    }
+    int index = (int) (offset / segmentSize), from = (int) (offset % segmentSize);
+    if (from + length <= segments[index].limit()) {
+      return view(segments[index], from, from + length).asReadOnlyBuffer();
+    }
+    byte[] bytes = new byte[length];
+    copy(offset, bytes, 0, length);
+    return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+  }
+
+  /**
+   * 按分隔符遍历记录，最后一条记录可以没有分隔符
+   * <p>
+   * 段内的记录是映射上的视图，没有拷贝；跨越两段的记录拷贝到堆内
+   *
+   * @param delimiter 分隔符，不包含在记录中
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  public ZeroFlow<ByteBuffer> records(byte delimiter) {
+
+    return scan(0, size, delimiter);
+  }
+
+  /**
+   * 按行遍历，行尾的\r会被去掉
+   * <p>
+   * 按字节查找换行，字符集不兼容ASCII时（比如UTF-16）退化为按字符流读取
+   *
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  public ZeroFlow<String> lines() {
+
+    if (!ByteSlice.asciiCompatible(charset)) {
+      return ByteSource.super.toSeq();
+    }
+    return decodeLines(0, size);
+  }
+
+  /**
+   * 把文件按换行对齐切成若干块，每块在{@link Async}中各自解码，同时解码的块数为处理器数的两倍
+   *
+   * @param async 解码使用的线程
+   * @param chunkBytes 每块的大约字节数，块的结尾会延伸到下一个换行
+   * @param ordered 是否按块的顺序输出，否则哪块先解码完就先输出哪块
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object，字符集不兼容ASCII时无法按字节切块，退化为{@link #lines()}
+   */
+  @Override
+  public ZeroFlow<String> parallelLines(Async async, int chunkBytes, boolean ordered) {
+
+    if (!ByteSlice.asciiCompatible(charset)) {
+      return lines();
+    }
+    ZeroFlow<long[]> chunks      = chunks(chunkBytes);
+    int              parallelism = Runtime.getRuntime().availableProcessors() * 2;
+    return c -> AsyncWindow.map(chunks, parallelism, 0, ordered, (long[] range) -> {
+      CompletableFuture<List<String>> future = new CompletableFuture<>();
+      async.submit(() -> {
+        try {
+          List<String> lines = new ArrayList<>();
+          decodeLines(range[0], range[1]).consume(lines::add);
+          future.complete(lines);
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        }
+      });
+      return future;
+    }).consume(lines -> lines.forEach(c));
+  }
+
+  @Override
+  public InputStream call() {
+
+    return new SegmentInputStream();
+  }
+
+  @Override
+  public Charset charset() {
+
+    return charset;
+  }
+
+  @Override
+  public byte[] toBytes() {
+
+    if (size > Integer.MAX_VALUE - 8) {
+      throw new OutOfMemoryError("Required array size too large");
+    }
+    byte[] bytes = new byte[(int) size];
+    copy(0, bytes, 0, bytes.length);
+    return bytes;
+  }
+
+  @Override
+  public byte[] toBytes(int bufferSize) {
+
+    return toBytes();
+  }
+
+  @Override
+  public ZeroFlow<String> toSeq() {
+
+    return lines();
+  }
+
+  @Override
+  public MappedByteSource withCharset(Charset charset) {
+
+    return new MappedByteSource(path, segments, segmentSize, size, charset);
+  }
+
+  @Override
+  public Path write(Path target) {
+
+    return FileTransfer.sameFile(target, path) ? target : write(target, 0, Long.MAX_VALUE);
+  }
+
+  void copy(long offset, byte[] dst, int dstOffset, int length) {
+
+    while (length > 0) {
+      int        index   = (int) (offset / segmentSize), from = (int) (offset % segmentSize);
+      ByteBuffer segment = segments[index].duplicate();
+      int        n       = Math.min(length, segment.limit() - from);
+      segment.position(from);
+      segment.get(dst, dstOffset, n);
+      offset += n;
+      dstOffset += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * 按换行对齐的区间，每个区间为{起始位置, 结束位置}
+   */
+  ZeroFlow<long[]> chunks(int chunkBytes) {
+
+    if (chunkBytes <= 0) {
+      throw new IllegalArgumentException("non-positive chunk bytes");
+    }
+    return c -> {
+      for (long start = 0, end; start < size; start = end) {
+        end = lineEnd(start + chunkBytes);
+        c.accept(new long[]{start, end});
+      }
+    };
+  }
+
+  private ZeroFlow<String> decodeLines(long from, long to) {
+
+    return c -> {
+      byte[][] scratch = {new byte[256]};
+      scan(from, to, (byte) '\n').consume(buffer -> {
+        int len = buffer.remaining();
+        if (len > 0 && buffer.get(buffer.position() + len - 1) == '\r') {
+          len--;
+        }
+        if (buffer.hasArray()) {
+          c.accept(new String(buffer.array(), buffer.arrayOffset() + buffer.position(), len, charset));
+        } else {
+          if (scratch[0].length < len) {
+            scratch[0] = new byte[Math.max(len, scratch[0].length << 1)];
+          }
+          buffer.get(scratch[0], 0, len);
+          c.accept(new String(scratch[0], 0, len, charset));
+        }
+      });
+    };
+  }
+
+  /**
+   * 从pos的前一个字节开始找换行，返回换行之后的位置，因此刚好在换行之后的pos不会再延伸
+   */
+  private long lineEnd(long pos) {
+
+    for (long p = pos - 1; p < size; p++) {
+      if (segments[(int) (p / segmentSize)].get((int) (p % segmentSize)) == '\n') {
+        return p + 1;
+      }
+    }
+    return size;
+  }
+
+  private ZeroFlow<ByteBuffer> scan(long from, long to, byte delimiter) {
+
+    return c -> {
+      Pending pending = new Pending();
+      for (int s = (int) (from / segmentSize); s < segments.length && (long) s * segmentSize < to; s++) {
+        ByteBuffer segment = segments[s];
+        long       base    = (long) s * segmentSize;
+        int        len     = (int) Math.min(segment.limit(), to - base), beg = (int) Math.max(0, from - base);
+        for (int i = beg; i < len; i++) {
+          if (segment.get(i) == delimiter) {
+            if (pending.size == 0) {
+              c.accept(view(segment, beg, i));
+            } else {
+              pending.append(segment, beg, i);
+              c.accept(pending.take());
+            }
+            beg = i + 1;
+          }
+        }
+        if (beg < len) {
+          pending.append(segment, beg, len);
+        }
+      }
+      if (pending.size > 0) {
+        c.accept(pending.take());
+      }
+    };
+  }
+
+  private static ByteBuffer view(ByteBuffer segment, int from, int to) {
+
+    ByteBuffer view = segment.duplicate();
+    view.limit(to);
+    view.position(from);
+    return view.slice();
+  }
+
+  /**
+   * 跨段记录中已经读到的部分
+   */
+  private static class Pending {
+
+    byte[] data = new byte[0];
+
+    int size;
+
+    void append(ByteBuffer segment, int from, int to) {
+
+      int n = to - from;
+      if (size + n > data.length) {
+        data = Arrays.copyOf(data, Math.max(size + n, data.length << 1));
+      }
+      ByteBuffer src = segment.duplicate();
+      src.position(from);
+      src.get(data, size, n);
+      size += n;
+    }
+
+    ByteBuffer take() {
+
+      ByteBuffer res = ByteBuffer.wrap(Arrays.copyOf(data, size));
+      size = 0;
+      return res;
+    }
+
+  }
+
+  private class SegmentInputStream extends InputStream {
+
+    private long pos;
+
+    @Override
+    public int read() {
+
+      if (pos >= size) {
+        return -1;
+      }
+      long p = pos++;
+      return segments[(int) (p / segmentSize)].get((int) (p % segmentSize)) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+
+      if (len == 0) {
+        return 0;
+      }
+      if (pos >= size) {
+        return -1;
+      }
+      int n = (int) Math.min(len, size - pos);
+      copy(pos, b, off, n);
+      pos += n;
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+
+      long skipped = Math.max(0, Math.min(n, size - pos));
+      pos += skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+
+      return (int) Math.min(Integer.MAX_VALUE, size - pos);
+    }
+
+  }
+
+}
@@ -0,0 +1,103 @@
+package com.trigram.zero.flow;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 多生产者、单消费者的无锁通道，把多个并发推送的流按到达顺序交给创建它的线程消费
+ * <p>
+ * 生产者之间不加锁，消费者没有数据时挂起，由生产者唤醒；缓冲超过上限时生产者短暂让出，形成宽松的背压
+ *
+ * @author Truma
+ */
+class MergeChannel<T> {
+
+  private static final Object NULL = new Object();
+
+  private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger size = new AtomicInteger();
+
+  private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+  private final Thread consumer = Thread.currentThread();
+
+  private final AtomicInteger producers;
+
+  private final int bufferSize;
+
+  private volatile boolean closed;
+
+  MergeChannel(int producers, int bufferSize) {
+
+    this.producers  = new AtomicInteger(producers);
+    this.bufferSize = bufferSize;
+  }
+
+  void produce(Async async, ZeroFlow<? extends T> source) {
+
+    async.submit(() -> {
+      try {
+        source.consumeTillStop(t -> {
+          if (!offer(t)) {
+            ZeroFlow.stop();
+          }
+        });
+      } catch (Throwable e) {
+        error.compareAndSet(null, e);
+      } finally {
+        producers.decrementAndGet();
+        LockSupport.unpark(consumer);
+      }
+    });
+  }
+
+  private boolean offer(Object t) {
+
+    if (closed) {
+      return false;
+    }
+    int n = size.incrementAndGet();
+    queue.offer(t == null ? NULL : t);
+    LockSupport.unpark(consumer);
+    if (n > bufferSize) {
+      while (!closed && size.get() > bufferSize) {
+        LockSupport.parkNanos(this, 100000L);
+      }
+    }
+    return !closed;
+  }
+
+  @SuppressWarnings("unchecked")
+  void drain(Consumer<T> c) {
+
+    try {
+      while (true) {
+        Object o = queue.poll();
+        if (o != null) {
+          size.decrementAndGet();
+          c.accept(o == NULL ? null : (T) o);
+          continue;
+        }
+        Throwable e = error.get();
+        if (e != null) {
+          throw BatchChannel.rethrow(e);
+        }
+        if (producers.get() == 0) {
+          if (queue.isEmpty()) {
+            return;
+          }
+          continue;
+        }
+        LockSupport.park(this);
+      }
+    } finally {
+      closed = true;
+      queue.clear();
+    }
+  }
+
+}
@@ -0,0 +1,258 @@
+package com.trigram.zero.flow;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 直接从字节数组或者字符序列的区间中解析数字，不创建中间的字符串
+ * <p>
+ * 区间首尾的空白会被忽略；格式错误时抛出{@link NumberFormatException}。
+ * 浮点数在有效数字不超过18位、十进制指数不超过22时直接计算，结果与{@link Double#parseDouble(String)}一致，
+ * 其他情况（包括NaN、Infinity、十六进制）转交给{@link Double#parseDouble(String)}
+ *
+ * @author Truma
+ */
+public final class NumberParser {
+
+  private static final double[] POW10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private NumberParser() {
+
+  }
+
+  /**
+   * <p>parseInt.</p>
+   *
+   * @param bytes a byte array
+   * @param from 起始位置
+   * @param to 结束位置，不包含
+   * @return an int
+   */
+  public static int parseInt(byte[] bytes, int from, int to) {
+
+    long res = parseLong(bytes, from, to);
+    if (res != (int) res) {
+      throw error(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+    return (int) res;
+  }
+
+  /**
+   * <p>parseLong.</p>
+   *
+   * @param bytes a byte array
+   * @param from 起始位置
+   * @param to 结束位置，不包含
+   * @return a long
+   */
+  public static long parseLong(byte[] bytes, int from, int to) {
+
+    int i = from, end = to;
+    while (i < end && (bytes[i] & 0xff) <= ' ') {
+      i++;
+    }
+    while (end > i && (bytes[end - 1] & 0xff) <= ' ') {
+      end--;
+    }
+    boolean neg = i < end && bytes[i] == '-';
+    if (neg || i < end && bytes[i] == '+') {
+      i++;
+    }
+    if (i == end) {
+      throw error(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+    long limit = neg ? Long.MIN_VALUE : -Long.MAX_VALUE, min = limit / 10, res = 0;
+    for (; i < end; i++) {
+      int d = bytes[i] - '0';
+      if (d < 0 || d > 9 || res < min || (res *= 10) < limit + d) {
+        throw error(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+      }
+      res -= d;
+    }
+    return neg ? res : -res;
+  }
+
+  /**
+   * <p>parseDouble.</p>
+   *
+   * @param bytes a byte array
+   * @param from 起始位置
+   * @param to 结束位置，不包含
+   * @return a double
+   */
+  public static double parseDouble(byte[] bytes, int from, int to) {
+
+    int i = from, end = to;
+    while (i < end && (bytes[i] & 0xff) <= ' ') {
+      i++;
+    }
+    while (end > i && (bytes[end - 1] & 0xff) <= ' ') {
+      end--;
+    }
+    boolean neg = i < end && bytes[i] == '-';
+    if (neg || i < end && bytes[i] == '+') {
+      i++;
+    }
+    long    mantissa = 0;
+    int     digits   = 0, exp = 0, d;
+    boolean any      = false, dot = false;
+    for (; i < end; i++) {
+      byte b = bytes[i];
+      if ((d = b - '0') >= 0 && d <= 9) {
+        if (digits == 18) {
+          return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+        }
+        mantissa = mantissa * 10 + d;
+        any      = true;
+        if (mantissa != 0) {
+          digits++;
+        }
+        if (dot) {
+          exp--;
+        }
+      } else if (b == '.' && !dot) {
+        dot = true;
+      } else {
+        break;
+      }
+    }
+    if (any && i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+      boolean expNeg = ++i < end && bytes[i] == '-';
+      if (expNeg || i < end && bytes[i] == '+') {
+        i++;
+      }
+      int e = 0, start = i;
+      for (; i < end && (d = bytes[i] - '0') >= 0 && d <= 9; i++) {
+        e = Math.min(e * 10 + d, 1 << 20);
+      }
+      exp += i == start ? Integer.MIN_VALUE / 2 : expNeg ? -e : e;
+    }
+    if (!any || i < end || exp < -POW10.length + 1 || exp >= POW10.length || mantissa >= 1L << 53) {
+      return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+    double res = exp >= 0 ? mantissa * POW10[exp] : mantissa / POW10[-exp];
+    return neg ? -res : res;
+  }
+
+  /**
+   * <p>parseInt.</p>
+   *
+   * @param cs a {@link java.lang.CharSequence} object
+   * @param from 起始位置
+   * @param to 结束位置，不包含
+   * @return an int
+   */
+  public static int parseInt(CharSequence cs, int from, int to) {
+
+    long res = parseLong(cs, from, to);
+    if (res != (int) res) {
+      throw error(cs.subSequence(from, to));
+    }
+    return (int) res;
+  }
+
+  /**
+   * <p>parseLong.</p>
+   *
+   * @param cs a {@link java.lang.CharSequence} object
+   * @param from 起始位置
+   * @param to 结束位置，不包含
+   * @return a long
+   */
+  public static long parseLong(CharSequence cs, int from, int to) {
+
+    int i = from, end = to;
+    while (i < end && cs.charAt(i) <= ' ') {
+      i++;
+    }
+    while (end > i && cs.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    boolean neg = i < end && cs.charAt(i) == '-';
+    if (neg || i < end && cs.charAt(i) == '+') {
+      i++;
+    }
+    if (i == end) {
+      throw error(cs.subSequence(from, to));
+    }
+    long limit = neg ? Long.MIN_VALUE : -Long.MAX_VALUE, min = limit / 10, res = 0;
+    for (; i < end; i++) {
+      int d = cs.charAt(i) - '0';
+      if (d < 0 || d > 9 || res < min || (res *= 10) < limit + d) {
+        throw error(cs.subSequence(from, to));
+      }
+      res -= d;
+    }
+    return neg ? res : -res;
+  }
+
+  /**
+   * <p>parseDouble.</p>
+   *
+   * @param cs a {@link java.lang.CharSequence} object
+   * @param from 起始位置
+   * @param to 结束位置，不包含
+   * @return a double
+   */
+  public static double parseDouble(CharSequence cs, int from, int to) {
+
+    int i = from, end = to;
+    while (i < end && cs.charAt(i) <= ' ') {
+      i++;
+    }
+    while (end > i && cs.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    boolean neg = i < end && cs.charAt(i) == '-';
+    if (neg || i < end && cs.charAt(i) == '+') {
+      i++;
+    }
+    long    mantissa = 0;
+    int     digits   = 0, exp = 0, d;
+    boolean any      = false, dot = false;
+    for (; i < end; i++) {
+      char c = cs.charAt(i);
+      if ((d = c - '0') >= 0 && d <= 9) {
+        if (digits == 18) {
+          return Double.parseDouble(cs.subSequence(from, to).toString());
+        }
+        mantissa = mantissa * 10 + d;
+        any      = true;
+        if (mantissa != 0) {
+          digits++;
+        }
+        if (dot) {
+          exp--;
+        }
+      } else if (c == '.' && !dot) {
+        dot = true;
+      } else {
+        break;
+      }
+    }
+    if (any && i < end && (cs.charAt(i) == 'e' || cs.charAt(i) == 'E')) {
+      boolean expNeg = ++i < end && cs.charAt(i) == '-';
+      if (expNeg || i < end && cs.charAt(i) == '+') {
+        i++;
+      }
+      int e = 0, start = i;
+      for (; i < end && (d = cs.charAt(i) - '0') >= 0 && d <= 9; i++) {
+        e = Math.min(e * 10 + d, 1 << 20);
+      }
+      exp += i == start ? Integer.MIN_VALUE / 2 : expNeg ? -e : e;
+    }
+    if (!any || i < end || exp < -POW10.length + 1 || exp >= POW10.length || mantissa >= 1L << 53) {
+      return Double.parseDouble(cs.subSequence(from, to).toString());
+    }
+    double res = exp >= 0 ? mantissa * POW10[exp] : mantissa / POW10[-exp];
+    return neg ? -res : res;
+  }
+
+  private static NumberFormatException error(CharSequence input) {
+
+    return new NumberFormatException("For input string: \"" + input + "\"");
+  }
+
+}
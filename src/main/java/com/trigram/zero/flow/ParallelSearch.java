@@ -0,0 +1,42 @@
+package com.trigram.zero.flow;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * 并行查找，找到后取消其他还没开始的分块、停止提交新的分块
+ *
+ * @author Truma
+ * @see ZeroFlow#parallelFind(Async, Predicate)
+ */
+final class ParallelSearch {
+
+  private ParallelSearch() {
+
+  }
+
+  /**
+   * 按256个一块并行查找
+   *
+   * @return 找到时{@link Mutable#isSet()}为true，值可能为null
+   */
+  static <T> Mutable<T> search(ZeroFlow<T> seq, Async async, Predicate<T> predicate) {
+
+    Cancellation  found = new Cancellation();
+    AtomicBoolean hit   = new AtomicBoolean();
+    Mutable<T>    m     = new Mutable<>(null);
+    async.cancellable(found).joinAll(seq.chunked(256).cancelOn(found).map(chunk -> () -> {
+      for (T t : chunk) {
+        if (found.isCancelled()) {
+          return;
+        }
+        if (predicate.test(t) && hit.compareAndSet(false, true)) {
+          m.set(t);
+          found.cancel();
+        }
+      }
+    }));
+    return m;
+  }
+
+}
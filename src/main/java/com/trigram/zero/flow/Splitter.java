@@ -18,16 +18,20 @@ public interface Splitter {
    */
   static Splitter of(Pattern sep) {
 
-    return (s, limit) -> c -> {
-      char[]  chars   = s.toCharArray();
-      Matcher matcher = sep.matcher(s);
-      int     left    = limit, beg = 0;
-      for (; left > 0 && matcher.find(); left--) {
-        c.accept(substring(chars, beg, matcher.start()));
-        beg = matcher.end();
-      }
-      if (left > 0) {
-        c.accept(substring(chars, beg, chars.length));
+    return new Ranged() {
+
+      @Override
+      public void ranges(String s, int limit, RangeConsumer consumer) {
+
+        Matcher matcher = sep.matcher(s);
+        int     left    = limit, beg = 0;
+        for (; left > 0 && matcher.find(); left--) {
+          consumer.accept(beg, matcher.start());
+          beg = matcher.end();
+        }
+        if (left > 0) {
+          consumer.accept(beg, s.length());
+        }
       }
     };
   }
@@ -53,18 +57,21 @@ public interface Splitter {
    */
   static Splitter of(String literal) {
 
-    return literal.length() == 1 ? of(literal.charAt(0)) :
-           literal.isEmpty() ? ofEmpty() : (s, limit) -> c -> {
-             char[] chars = s.toCharArray();
-             int    left  = limit, beg = 0, len = literal.length(), index;
-             for (; left > 0 && (index = s.indexOf(literal, beg)) > 0; left--) {
-               c.accept(substring(chars, beg, index));
-               beg = index + len;
-             }
-             if (left > 0) {
-               c.accept(substring(chars, beg, chars.length));
-             }
-           };
+    return literal.length() == 1 ? of(literal.charAt(0)) : literal.isEmpty() ? ofEmpty() : new Ranged() {
+
+      @Override
+      public void ranges(String s, int limit, RangeConsumer consumer) {
+
+        int left = limit, beg = 0, len = literal.length(), index;
+        for (; left > 0 && (index = s.indexOf(literal, beg)) >= 0; left--) {
+          consumer.accept(beg, index);
+          beg = index + len;
+        }
+        if (left > 0) {
+          consumer.accept(beg, s.length());
+        }
+      }
+    };
   }
 
   /**
@@ -75,18 +82,19 @@ public interface Splitter {
    */
   static Splitter of(char sep) {
 
-    return (s, limit) -> c -> {
-      char[] chars = s.toCharArray();
-      int    len   = chars.length, last = 0, left = limit;
-      for (int i = 0; i < len && left > 0; i++) {
-        if (chars[i] == sep) {
-          c.accept(substring(chars, last, i));
-          last = i + 1;
-          left--;
+    return new Ranged() {
+
+      @Override
+      public void ranges(String s, int limit, RangeConsumer consumer) {
+
+        int left = limit, beg = 0, index;
+        for (; left > 0 && (index = s.indexOf(sep, beg)) >= 0; left--) {
+          consumer.accept(beg, index);
+          beg = index + 1;
+        }
+        if (left > 0) {
+          consumer.accept(beg, s.length());
         }
-      }
-      if (left > 0) {
-        c.accept(substring(chars, last, len));
       }
     };
   }
@@ -121,4 +129,99 @@ public interface Splitter {
    */
   ZeroFlow<String> split(String s, int limit);
 
+  /**
+   * 切分为原字符串上的视图，不拷贝字符
+   *
+   * @param s a {@link java.lang.String} object
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @see #splitView(String, int)
+   */
+  default ZeroFlow<CharSequence> splitView(String s) {
+
+    return splitView(s, Integer.MAX_VALUE);
+  }
+
+  /**
+   * 切分为原字符串上的视图，{@link #of}得到的切分器每个字段都复用同一个{@link CharSlice}，只在回调中有效；
+   * 其他实现退化为{@link #split(String, int)}
+   *
+   * @param s a {@link java.lang.String} object
+   * @param limit 最多输出的字段数
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<CharSequence> splitView(String s, int limit) {
+
+    return split(s, limit).map(t -> t);
+  }
+
+  /**
+   * 切分到复用的数组中，与{@link #split(String, int)}的limit一致：
+   * 最多切出数组长度个字段，超出的部分被丢弃，数组中多余的位置保持不变
+   *
+   * @param s a {@link java.lang.String} object
+   * @param reuse 复用的数组
+   * @return 切分出的字段数
+   */
+  default int splitInto(String s, String[] reuse) {
+
+    int[] count = {0};
+    split(s, reuse.length).consume(t -> reuse[count[0]++] = t);
+    return count[0];
+  }
+
+  /**
+   * 按分隔符位置切分的切分器，只需要给出每个字段的区间，字符串、视图和数组三种输出共用同一段查找逻辑
+   */
+  abstract class Ranged implements Splitter {
+
+    /**
+     * 按顺序给出每个字段的区间
+     *
+     * @param s a {@link java.lang.String} object
+     * @param limit 最多输出的字段数
+     * @param consumer a {@link com.trigram.zero.flow.Splitter.RangeConsumer} object
+     */
+    public abstract void ranges(String s, int limit, RangeConsumer consumer);
+
+    @Override
+    public ZeroFlow<String> split(String s, int limit) {
+
+      return c -> ranges(s, limit, (start, end) -> c.accept(s.substring(start, end)));
+    }
+
+    @Override
+    public ZeroFlow<CharSequence> splitView(String s, int limit) {
+
+      return c -> {
+        CharSlice slice = new CharSlice();
+        ranges(s, limit, (start, end) -> c.accept(slice.set(s, start, end)));
+      };
+    }
+
+    @Override
+    public int splitInto(String s, String[] reuse) {
+
+      int[] count = {0};
+      ranges(s, reuse.length, (start, end) -> reuse[count[0]++] = s.substring(start, end));
+      return count[0];
+    }
+
+  }
+
+  /**
+   * 字段区间的回调
+   */
+  @FunctionalInterface
+  interface RangeConsumer {
+
+    /**
+     * <p>accept.</p>
+     *
+     * @param start 起始位置
+     * @param end 结束位置，不包含
+     */
+    void accept(int start, int end);
+
+  }
+
 }
@@ -0,0 +1,393 @@
+package com.trigram.zero.flow;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮定时器，添加和取消定时任务都是O(1)，适合大量短期的定时任务，比如超时控制、周期触发
+ * <p>
+ * 由一个守护线程按刻度推进，精度为一个刻度，没有定时任务时线程挂起。
+ * 任务就在这个线程中执行，应该尽量短小，耗时的任务需要再交给{@link Async}；任务中的异常会被忽略，不影响其他任务。
+ * 自己创建的时间轮用完后需要{@link #close()}结束线程，{@link #shared()}在整个进程中共用，不能关闭
+ *
+ * @author Truma
+ */
+public class TimerWheel implements AutoCloseable {
+
+  private static final int INIT = 0;
+
+  private static final int CANCELLED = 1;
+
+  private static final int EXPIRED = 2;
+
+  private static volatile TimerWheel shared;
+
+  private final long tickNanos;
+
+  private final Bucket[] buckets;
+
+  private final int mask;
+
+  private final long start = System.nanoTime();
+
+  private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();
+
+  private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+  /**
+   * 还没有到期也没有被移除的定时任务数量，为0时工作线程挂起
+   */
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private final Thread worker;
+
+  private volatile boolean closed;
+
+  /**
+   * 下一个要处理的刻度，只由工作线程读写
+   */
+  private long tick;
+
+  /**
+   * <p>Constructor for TimerWheel.</p>
+   *
+   * @param tickMillis 每个刻度的时长，也就是定时的精度
+   * @param wheelSize 时间轮的槽数，会向上取整为2的幂
+   */
+  public TimerWheel(long tickMillis, int wheelSize) {
+
+    if (tickMillis <= 0 || wheelSize <= 0) {
+      throw new IllegalArgumentException("non-positive tick or wheel size");
+    }
+    int size = Integer.highestOneBit(Math.max(1, wheelSize * 2 - 1));
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    this.buckets   = new Bucket[size];
+    this.mask      = size - 1;
+    for (int i = 0; i < size; i++) {
+      buckets[i] = new Bucket();
+    }
+    this.worker = new Thread(this::work, "zero-flow-timer");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * 共享的定时器，精度为1毫秒，第一次使用时创建
+   *
+   * @return a {@link com.trigram.zero.flow.TimerWheel} object
+   */
+  public static TimerWheel shared() {
+
+    TimerWheel wheel = shared;
+    if (wheel == null) {
+      synchronized (TimerWheel.class) {
+        wheel = shared;
+        if (wheel == null) {
+          shared = wheel = new TimerWheel(1, 512);
+        }
+      }
+    }
+    return wheel;
+  }
+
+  /**
+   * 延迟一段时间后执行一次任务
+   *
+   * @param task a {@link java.lang.Runnable} object
+   * @param delay a long
+   * @param unit a {@link java.util.concurrent.TimeUnit} object
+   * @return 可以取消的定时任务
+   */
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+
+    return add(new Timeout(this, task, System.nanoTime() + unit.toNanos(delay), 0));
+  }
+
+  /**
+   * 延迟一段时间后按固定频率重复执行任务，直到被取消
+   *
+   * @param task a {@link java.lang.Runnable} object
+   * @param delay a long
+   * @param period a long
+   * @param unit a {@link java.util.concurrent.TimeUnit} object
+   * @return 可以取消的定时任务
+   */
+  public Timeout scheduleAtFixedRate(Runnable task, long delay, long period, TimeUnit unit) {
+
+    if (period <= 0) {
+      throw new IllegalArgumentException("non-positive period");
+    }
+    return add(new Timeout(this, task, System.nanoTime() + unit.toNanos(delay), unit.toNanos(period)));
+  }
+
+  /**
+   * <p>pending.</p>
+   *
+   * @return 还没有到期的定时任务数量
+   */
+  public int pending() {
+
+    return pending.get();
+  }
+
+  /**
+   * 结束工作线程，还没有到期的定时任务全部取消，之后不能再添加任务
+   */
+  @Override
+  public void close() {
+
+    if (this == shared) {
+      throw new IllegalStateException("shared timer wheel cannot be closed");
+    }
+    closed = true;
+    worker.interrupt();
+    if (Thread.currentThread() != worker) {
+      Async.apply(worker::join);
+    }
+  }
+
+  private Timeout add(Timeout timeout) {
+
+    if (closed) {
+      throw new IllegalStateException("timer wheel is closed");
+    }
+    added.offer(timeout);
+    if (pending.getAndIncrement() == 0) {
+      LockSupport.unpark(worker);
+    }
+    if (closed) {
+      // 与close()并发时工作线程可能已经清理完，这里自行取消
+      Timeout.STATE.compareAndSet(timeout, INIT, CANCELLED);
+    }
+    return timeout;
+  }
+
+  private void work() {
+
+    while (!closed) {
+      if (pending.get() == 0) {
+        LockSupport.park(this);
+        tick = Math.max(tick, (System.nanoTime() - start) / tickNanos);
+        continue;
+      }
+      long wait = start + (tick + 1) * tickNanos - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(this, wait);
+        continue;
+      }
+      removeCancelled();
+      transferAdded();
+      expire(buckets[(int) (tick & mask)]);
+      tick++;
+    }
+    cancelAll();
+  }
+
+  private void cancelAll() {
+
+    for (Bucket bucket : buckets) {
+      for (Timeout t = bucket.head; t != null; ) {
+        Timeout next = t.next;
+        Timeout.STATE.compareAndSet(t, INIT, CANCELLED);
+        bucket.remove(t);
+        t = next;
+      }
+    }
+    for (Timeout t = added.poll(); t != null; t = added.poll()) {
+      Timeout.STATE.compareAndSet(t, INIT, CANCELLED);
+    }
+    cancelled.clear();
+    pending.set(0);
+  }
+
+  private void removeCancelled() {
+
+    for (Timeout t = cancelled.poll(); t != null; t = cancelled.poll()) {
+      if (t.bucket != null) {
+        t.bucket.remove(t);
+        pending.decrementAndGet();
+      }
+    }
+  }
+
+  private void transferAdded() {
+
+    for (Timeout t = added.poll(); t != null; t = added.poll()) {
+      if (t.state == INIT) {
+        place(t, tick);
+      } else {
+        pending.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * 放入目标刻度的槽，圈数从这个槽在minTick之后第一次被处理时算起
+   */
+  private void place(Timeout t, long minTick) {
+
+    long target = (t.deadline - start + tickNanos - 1) / tickNanos - 1;
+    if (target < minTick) {
+      target = minTick;
+    }
+    long firstVisit = minTick + ((target - minTick) & mask);
+    t.rounds = (target - firstVisit) / buckets.length;
+    buckets[(int) (target & mask)].add(t);
+  }
+
+  private void expire(Bucket bucket) {
+
+    Timeout rescheduled = null;
+
+    Timeout t = bucket.head;
+    while (t != null) {
+      Timeout next = t.next;
+      if (t.state != INIT) {
+        bucket.remove(t);
+        pending.decrementAndGet();
+      } else if (t.rounds > 0) {
+        t.rounds--;
+      } else {
+        bucket.remove(t);
+        if (t.period > 0) {
+          run(t.task);
+          t.deadline += t.period;
+          // 遍历完当前槽之后再放回，避免放回当前槽时在这次遍历中被重复处理
+          t.next      = rescheduled;
+          rescheduled = t;
+        } else {
+          if (Timeout.STATE.compareAndSet(t, INIT, EXPIRED)) {
+            run(t.task);
+          }
+          pending.decrementAndGet();
+        }
+      }
+      t = next;
+    }
+    while (rescheduled != null) {
+      Timeout next = rescheduled.next;
+      place(rescheduled, tick + 1);
+      rescheduled = next;
+    }
+  }
+
+  private static void run(Runnable task) {
+
+    try {
+      task.run();
+    } catch (Throwable ignore) {
+    }
+  }
+
+  /**
+   * 已添加到时间轮的定时任务
+   */
+  public static final class Timeout {
+
+    static final AtomicIntegerFieldUpdater<Timeout> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private final TimerWheel wheel;
+
+    private final Runnable task;
+
+    private final long period;
+
+    private long deadline;
+
+    private long rounds;
+
+    private Bucket bucket;
+
+    private Timeout prev;
+
+    private Timeout next;
+
+    private volatile int state;
+
+    Timeout(TimerWheel wheel, Runnable task, long deadline, long period) {
+
+      this.wheel    = wheel;
+      this.task     = task;
+      this.deadline = deadline;
+      this.period   = period;
+    }
+
+    /**
+     * 取消定时任务，已经开始执行的任务不受影响
+     *
+     * @return 是否由这次调用取消，已到期或者已取消时返回false
+     */
+    public boolean cancel() {
+
+      if (!STATE.compareAndSet(this, INIT, CANCELLED)) {
+        return false;
+      }
+      wheel.cancelled.offer(this);
+      return true;
+    }
+
+    /**
+     * <p>isCancelled.</p>
+     *
+     * @return a boolean
+     */
+    public boolean isCancelled() {
+
+      return state == CANCELLED;
+    }
+
+    /**
+     * <p>isExpired.</p>
+     *
+     * @return 一次性任务是否已经到期执行
+     */
+    public boolean isExpired() {
+
+      return state == EXPIRED;
+    }
+
+  }
+
+  private static final class Bucket {
+
+    Timeout head;
+
+    Timeout tail;
+
+    void add(Timeout t) {
+
+      t.bucket = this;
+      t.prev   = tail;
+      t.next   = null;
+      if (tail == null) {
+        head = t;
+      } else {
+        tail.next = t;
+      }
+      tail = t;
+    }
+
+    void remove(Timeout t) {
+
+      if (t.prev == null) {
+        head = t.next;
+      } else {
+        t.prev.next = t.next;
+      }
+      if (t.next == null) {
+        tail = t.prev;
+      } else {
+        t.next.prev = t.prev;
+      }
+      t.bucket = null;
+      t.prev   = null;
+      t.next   = null;
+    }
+
+  }
+
+}
@@ -1,6 +1,9 @@
 package com.trigram.zero.flow;
 
+import com.trigram.zero.flow.iterators.CloseableItr;
+import com.trigram.zero.flow.iterators.MergeSortedItr;
 import com.trigram.zero.flow.iterators.PickItr;
+import com.trigram.zero.flow.iterators.RunCursor;
 import com.trigram.zero.flow.pair.BooleanPair;
 import com.trigram.zero.flow.pair.DoublePair;
 import com.trigram.zero.flow.pair.IntPair;
@@ -9,6 +12,8 @@ import com.trigram.zero.flow.pair.Pair;
 import com.trigram.zero.flow.pair.PairZeroFlow;
 import com.trigram.zero.flow.triple.TripleConsumer;
 import com.trigram.zero.flow.triple.TripleZeroFlow;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -25,6 +30,13 @@ import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
@@ -342,6 +354,63 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return mapSub(first, last, Reducer.toList());
   }
 
+  /**
+   * 异步映射，最多同时进行maxInFlight个异步任务，窗口满时暂停遍历数据源，结果按原顺序输出
+   *
+   * @param maxInFlight 同时进行的任务数上限
+   * @param function 返回异步结果，比如远程调用
+   * @param <E> a E class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default <E> ZeroFlow<E> mapAsync(int maxInFlight, Function<T, CompletableFuture<E>> function) {
+
+    return mapAsync(maxInFlight, 0, function);
+  }
+
+  /**
+   * 同{@link #mapAsync(int, Function)}，每个任务从提交开始计时，超时后取消并抛出{@link java.util.concurrent.CompletionException}。
+   * 下游停止或出现异常时，还没完成的任务都会被取消
+   *
+   * @param maxInFlight 同时进行的任务数上限
+   * @param timeoutMillis 每个任务的超时时间，不大于0时不限时
+   * @param function 返回异步结果，比如远程调用
+   * @param <E> a E class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default <E> ZeroFlow<E> mapAsync(int maxInFlight, long timeoutMillis, Function<T, CompletableFuture<E>> function) {
+
+    return AsyncWindow.map(this, maxInFlight, timeoutMillis, true, function);
+  }
+
+  /**
+   * 同{@link #mapAsync(int, Function)}，结果按完成的顺序输出，慢任务不会阻塞后面已完成的结果
+   *
+   * @param maxInFlight 同时进行的任务数上限
+   * @param function 返回异步结果，比如远程调用
+   * @param <E> a E class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default <E> ZeroFlow<E> mapAsyncUnordered(int maxInFlight, Function<T, CompletableFuture<E>> function) {
+
+    return mapAsyncUnordered(maxInFlight, 0, function);
+  }
+
+  /**
+   * 同{@link #mapAsync(int, long, Function)}，结果按完成的顺序输出
+   *
+   * @param maxInFlight 同时进行的任务数上限
+   * @param timeoutMillis 每个任务的超时时间，不大于0时不限时
+   * @param function 返回异步结果，比如远程调用
+   * @param <E> a E class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default <E> ZeroFlow<E> mapAsyncUnordered(
+      int maxInFlight, long timeoutMillis, Function<T, CompletableFuture<E>> function
+  ) {
+
+    return AsyncWindow.map(this, maxInFlight, timeoutMillis, false, function);
+  }
+
   /**
    * 处理成int类型
    *
@@ -496,6 +565,37 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     };
   }
 
+  /**
+   * 按固定频率产生从0开始的序号，不会自行结束，通常配合take、timeLimit等使用
+   * <p>
+   * 由共享的{@link TimerWheel}计时，消费者跟不上时会连续输出积压的序号
+   *
+   * @param periodMillis a long
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  static ZeroFlow<Long> interval(long periodMillis) {
+
+    if (periodMillis <= 0) {
+      throw new IllegalArgumentException("non-positive period");
+    }
+    return c -> {
+      Semaphore          ticks   = new Semaphore(0);
+      TimerWheel.Timeout timeout = TimerWheel.shared()
+          .scheduleAtFixedRate(ticks::release, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+      try {
+        for (long i = 0; ; i++) {
+          ticks.acquire();
+          c.accept(i);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } finally {
+        timeout.cancel();
+      }
+    };
+  }
+
   /**
    * <p>of.</p>
    *
@@ -648,6 +748,29 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return c -> seq.consume(o -> o.ifPresent(c));
   }
 
+  /**
+   * 合并多个并发推送的流，数据按到达的顺序交给当前线程，适合合并多个实时数据源
+   * <p>
+   * 每个流在async提供的线程中遍历，经过无锁的多生产者队列传给消费者；下游停止后各个流也随之停止，
+   * 任何一个流中的异常会在当前线程重新抛出
+   *
+   * @param async 需要能为每个流同时提供一个线程
+   * @param flows a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @param <T> a T class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  @SafeVarargs
+  static <T> ZeroFlow<T> merge(Async async, ZeroFlow<? extends T>... flows) {
+
+    return c -> {
+      MergeChannel<T> channel = new MergeChannel<>(flows.length, 1024);
+      for (ZeroFlow<? extends T> flow : flows) {
+        channel.produce(async, flow);
+      }
+      channel.drain(c);
+    };
+  }
+
   /**
    * <p>flatIterable.</p>
    *
@@ -673,6 +796,30 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return () -> ItrUtil.flat(Arrays.asList(iterables).iterator());
   }
 
+  /**
+   * 对多个已排序的流进行k路归并，结果依然有序，相等的数据按参数顺序输出
+   * <p>
+   * 以败者树逐个拉取每个流的迭代器，每路只缓存一个数据，不会缓存或重新排序全部数据
+   *
+   * @param comparator
+   *     各个流的排序规则
+   * @param flows
+   *     已按comparator排序的流
+   * @param <T> a T class
+   * @return a {@link com.trigram.zero.flow.ItrZeroFlow} object
+   */
+  @SafeVarargs
+  static <T> ItrZeroFlow<T> mergeSorted(Comparator<T> comparator, Iterable<T>... flows) {
+
+    return () -> {
+      List<Iterator<T>> iterators = new ArrayList<>(flows.length);
+      for (Iterable<T> flow : flows) {
+        iterators.add(flow.iterator());
+      }
+      return new MergeSortedItr<>(comparator, iterators);
+    };
+  }
+
   /**
    * <p>flatIterable.</p>
    *
@@ -929,6 +1076,124 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return any(predicate.negate());
   }
 
+  /**
+   * 并行查找符合条件的数据，找到后取消其他还没开始的分块、停止提交新的分块，正在处理的分块也会尽快停止
+   * <p>
+   * 数据按256个一块交给async处理，找到的不一定是顺序上的第一个，耗时只和匹配数据所在的位置有关。
+   * 匹配到的数据为null时同样返回空的{@link Optional}，需要区分时使用{@link #parallelAny(Async, Predicate)}
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param predicate 会在多个线程中同时调用
+   * @return a {@link java.util.Optional} object
+   */
+  default Optional<T> parallelFind(Async async, Predicate<T> predicate) {
+
+    return ParallelSearch.search(this, async, predicate).toOptional();
+  }
+
+  /**
+   * 并行判断是否有数据符合条件，见{@link #parallelFind(Async, Predicate)}
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param predicate 会在多个线程中同时调用
+   * @return a boolean
+   */
+  default boolean parallelAny(Async async, Predicate<T> predicate) {
+
+    return ParallelSearch.search(this, async, predicate).isSet();
+  }
+
+  /**
+   * 并行判断是否所有数据都符合条件，遇到第一个不符合的就停止，见{@link #parallelFind(Async, Predicate)}
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param predicate 会在多个线程中同时调用
+   * @return a boolean
+   */
+  default boolean parallelAll(Async async, Predicate<T> predicate) {
+
+    return !parallelAny(async, predicate.negate());
+  }
+
+  /**
+   * 按列写出分隔文本，每条数据一行，同步写盘
+   *
+   * @param target 目标文件
+   * @param delimiter 分隔符，只能是ASCII字符
+   * @param columns 每一列的取值
+   * @return a {@link java.nio.file.Path} object
+   * @see #writeDelimited(Path, char, Async, Function[])
+   */
+  @SuppressWarnings("unchecked")
+  default Path writeDelimited(Path target, char delimiter, Function<T, ?>... columns) {
+
+    return writeDelimited(target, delimiter, null, columns);
+  }
+
+  /**
+   * 按列写出分隔文本，每条数据一行
+   * <p>
+   * 直接编码到复用的字节缓冲，整数和浮点数不经过字符串，缓冲满时整块写盘；
+   * 含有分隔符、引号或者换行的文本用双引号包裹，null写为空
+   *
+   * @param target 目标文件
+   * @param delimiter 分隔符，只能是ASCII字符
+   * @param async 不为null时双缓冲，写盘在其中进行，与编码重叠
+   * @param columns 每一列的取值
+   * @return a {@link java.nio.file.Path} object
+   */
+  @SuppressWarnings("unchecked")
+  default Path writeDelimited(Path target, char delimiter, Async async, Function<T, ?>... columns) {
+
+    byte sep = ByteSlice.asciiDelimiter(delimiter);
+    try (FileSink sink = async == null ? FileSink.open(target) : FileSink.open(target, async)) {
+      consume(t -> {
+        for (int i = 0; i < columns.length; i++) {
+          if (i > 0) {
+            sink.put(sep);
+          }
+          sink.putField(columns[i].apply(t), sep);
+        }
+        sink.put((byte) '\n');
+      });
+    }
+    return target;
+  }
+
+  /**
+   * 由编码函数把每条数据写入{@link FileSink}，双缓冲，写盘在{@link Async}中进行
+   *
+   * @param target 目标文件
+   * @param encoder 把一条数据编码到缓冲中
+   * @param async 写盘使用的线程
+   * @return a {@link java.nio.file.Path} object
+   * @see #writeTo(Path, BiConsumer, Async, int, boolean)
+   */
+  default Path writeTo(Path target, BiConsumer<T, FileSink> encoder, Async async) {
+
+    return writeTo(target, encoder, async, 2, false);
+  }
+
+  /**
+   * 由编码函数把每条数据写入{@link FileSink}，编码和写盘重叠进行
+   * <p>
+   * 当前缓冲满时交给后台任务写盘并换一个空闲的缓冲，所有缓冲都在排队时遍历被阻塞，直到写盘腾出缓冲
+   *
+   * @param target 目标文件
+   * @param encoder 把一条数据编码到缓冲中
+   * @param async 写盘使用的线程
+   * @param bufferCount 缓冲的数量，至少为2
+   * @param force 是否在每组缓冲写完后调用{@link java.nio.channels.FileChannel#force(boolean)}
+   * @return a {@link java.nio.file.Path} object
+   */
+  default Path writeTo(Path target, BiConsumer<T, FileSink> encoder, Async async, int bufferCount, boolean force) {
+
+    try (FileSink sink = FileSink.open(target, async, FileSink.BUFFER_SIZE, bufferCount, force)) {
+      consume(t -> encoder.accept(t, sink));
+    }
+    return target;
+  }
+
   /**
    * 查找第一个重复的数据
    *
@@ -1077,6 +1342,48 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return toBatched();
   }
 
+  /**
+   * 转为可迭代对象，每次迭代都会在后台线程重新遍历数据源，见{@link #iterator(int)}
+   *
+   * @param bufferSize 最多缓冲的数据量
+   * @return a {@link com.trigram.zero.flow.ItrZeroFlow} object
+   */
+  default ItrZeroFlow<T> asIterable(int bufferSize) {
+
+    return () -> iterator(bufferSize);
+  }
+
+  /**
+   * 将推送的流转为拉取的迭代器，不需要先缓存全部数据
+   * <p>
+   * 数据源在后台守护线程中遍历，经过有界缓冲交给迭代器，缓冲满时数据源阻塞，因此内存占用只和bufferSize有关，
+   * 适合与另一个流zip。迭代结束或者迭代器被关闭后数据源随之停止，zip等内部遍历结束时会自动关闭；
+   * 中途放弃又没有关闭的迭代器被回收后，数据源也会停止
+   *
+   * @param bufferSize 最多缓冲的数据量
+   * @return a {@link com.trigram.zero.flow.iterators.CloseableItr} object
+   */
+  default CloseableItr<T> iterator(int bufferSize) {
+
+    return iterator(Async.daemon(), bufferSize);
+  }
+
+  /**
+   * 同{@link #iterator(int)}，数据源在async提供的线程中遍历，遍历期间会一直占用这个线程
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param bufferSize 最多缓冲的数据量
+   * @return a {@link com.trigram.zero.flow.iterators.CloseableItr} object
+   */
+  default CloseableItr<T> iterator(Async async, int bufferSize) {
+
+    BatchChannel<T> channel  = new BatchChannel<>(bufferSize);
+    CloseableItr<T> iterator = channel.iterator();
+    channel.watch(iterator);
+    channel.produce(async, this);
+    return iterator;
+  }
+
   /**
    * <p>toBatched.</p>
    *
@@ -1110,6 +1417,41 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return average(function, null);
   }
 
+  /**
+   * 每个数据都检查取消标记，取消后停止遍历
+   *
+   * @param cancellation a {@link com.trigram.zero.flow.Cancellation} object
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<T> cancelOn(Cancellation cancellation) {
+
+    return cancelOn(cancellation, 1);
+  }
+
+  /**
+   * 每checkEvery个数据检查一次取消标记，取消后停止遍历，适合数据量很大、单个数据处理很快的场景
+   *
+   * @param cancellation a {@link com.trigram.zero.flow.Cancellation} object
+   * @param checkEvery 检查的间隔
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<T> cancelOn(Cancellation cancellation, int checkEvery) {
+
+    if (checkEvery <= 0) {
+      throw new IllegalArgumentException("non-positive checkEvery");
+    }
+    return c -> {
+      int[] n = {1};
+      consumeTillStop(t -> {
+        if (--n[0] == 0) {
+          n[0] = checkEvery;
+          cancellation.check();
+        }
+        c.accept(t);
+      });
+    };
+  }
+
   /**
    * <p>chunked.</p>
    *
@@ -1171,6 +1513,93 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return chunked(size, transducer.reducer()).map(transducer.transformer());
   }
 
+  /**
+   * 按数量和延迟分批，攒够maxSize个或者批次中最早的数据等待超过maxLatencyMillis时输出一批，适合批量写入数据库、文件等场景
+   * <p>
+   * 与{@link #chunked(int)}不同，数据源在async提供的线程中遍历，当前线程按时间等待，
+   * 数据源空闲时也会按时输出已攒到的数据，低负载时的延迟不会超过maxLatencyMillis
+   *
+   * @param maxSize 每批最多的数据量
+   * @param maxLatencyMillis 每批最长的等待时间
+   * @param async 遍历数据源期间会一直占用它提供的一个线程
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  @SuppressWarnings("unchecked")
+  default ZeroFlow<ListZeroFlow<T>> buffer(int maxSize, long maxLatencyMillis, Async async) {
+
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("non-positive size");
+    }
+    long latency = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+    return c -> {
+      ArrayBlockingQueue<Object> queue  = new ArrayBlockingQueue<>(Math.max(maxSize, 512));
+      Object                     nil    = new Object();
+      Object                     end    = new Object();
+      AtomicReference<Throwable> error  = new AtomicReference<>();
+      AtomicBoolean              closed = new AtomicBoolean();
+      async.submit(() -> {
+        try {
+          consumeTillStop(t -> {
+            Object o = t == null ? nil : t;
+            try {
+              while (!queue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+                if (closed.get()) {
+                  stop();
+                }
+              }
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              stop();
+            }
+          });
+        } catch (Throwable e) {
+          error.set(e);
+        }
+        try {
+          while (!closed.get()) {
+            if (queue.offer(end, 100, TimeUnit.MILLISECONDS)) {
+              break;
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      try {
+        ArrayListZeroFlow<T> batch    = new ArrayListZeroFlow<>(maxSize);
+        long                 deadline = 0;
+        while (true) {
+          Object o = batch.isEmpty() ? queue.take() : queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (o == end) {
+            break;
+          }
+          if (o != null) {
+            if (batch.isEmpty()) {
+              deadline = System.nanoTime() + latency;
+            }
+            batch.add(o == nil ? null : (T) o);
+          }
+          if (o == null || batch.size() == maxSize) {
+            c.accept(batch);
+            batch = new ArrayListZeroFlow<>(maxSize);
+          }
+        }
+        if (error.get() != null) {
+          throw BatchChannel.rethrow(error.get());
+        }
+        if (!batch.isEmpty()) {
+          c.accept(batch);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } finally {
+        closed.set(true);
+        queue.clear();
+      }
+    };
+  }
+
   /**
    * 无限循环
    *
@@ -1412,122 +1841,522 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
   }
 
   /**
-   * 每个数据重复多少次在此之前所有的处理
+   * 每个数据重复多少次在此之前所有的处理
+   *
+   * @param times a int
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<T> duplicateAll(int times) {
+
+    return c -> {
+      for (int i = 0; i < times; i++) {
+        consume(c);
+      }
+    };
+  }
+
+  /**
+   * 每个数据复制多少次继续传递给后续处理
+   *
+   * @param times a int
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<T> duplicateEach(int times) {
+
+    return c -> consume(t -> {
+      for (int i = 0; i < times; i++) {
+        c.accept(t);
+      }
+    });
+  }
+
+  /**
+   * 只有条件的数据才复制
+   *
+   * @see #duplicateEach(int)
+   * @param times a int
+   * @param predicate a {@link java.util.function.Predicate} object
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<T> duplicateIf(int times, Predicate<T> predicate) {
+
+    return c -> consume(t -> {
+      if (predicate.test(t)) {
+        for (int i = 0; i < times; i++) {
+          c.accept(t);
+        }
+      } else {
+        c.accept(t);
+      }
+    });
+  }
+
+  /**
+   * <p>groupBy.</p>
+   *
+   * @param toKey a {@link java.util.function.Function} object
+   * @param <K> a K class
+   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   */
+  default <K> MapZeroFlow<K, ListZeroFlow<T>> groupBy(Function<T, K> toKey) {
+
+    return groupBy(toKey, Reducer.toList());
+  }
+
+  /**
+   * <p>groupBy.</p>
+   *
+   * @param toKey a {@link java.util.function.Function} object
+   * @param reducer a {@link com.trigram.zero.flow.Reducer} object
+   * @param <K> a K class
+   * @param <V> a V class
+   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   */
+  default <K, V> MapZeroFlow<K, V> groupBy(Function<T, K> toKey, Reducer<T, V> reducer) {
+
+    return reduce(Reducer.toMap(HashMap::new, toKey, reducer));
+  }
+
+  /**
+   * <p>groupBy.</p>
+   *
+   * @param toKey a {@link java.util.function.Function} object
+   * @param operator a {@link java.util.function.BinaryOperator} object
+   * @param <K> a K class
+   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   */
+  default <K> MapZeroFlow<K, T> groupBy(Function<T, K> toKey, BinaryOperator<T> operator) {
+
+    return groupBy(toKey, Transducer.of(operator));
+  }
+
+  /**
+   * <p>groupBy.</p>
+   *
+   * @param toKey a {@link java.util.function.Function} object
+   * @param transducer a {@link com.trigram.zero.flow.Transducer} object
+   * @param <K> a K class
+   * @param <V> a V class
+   * @param <E> a E class
+   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   */
+  default <K, V, E> MapZeroFlow<K, E> groupBy(Function<T, K> toKey, Transducer<T, V, E> transducer) {
+
+    return reduce(Reducer.toMap(HashMap::new, toKey, transducer));
+  }
+
+  /**
+   * <p>groupBy.</p>
+   *
+   * @param toKey a {@link java.util.function.Function} object
+   * @param toValue a {@link java.util.function.Function} object
+   * @param <K> a K class
+   * @param <E> a E class
+   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   */
+  default <K, E> MapZeroFlow<K, ListZeroFlow<E>> groupBy(Function<T, K> toKey, Function<T, E> toValue) {
+
+    return groupBy(toKey, Reducer.mapping(toValue));
+  }
+
+  /**
+   * 多线程分组收束，数据分批交给async处理
+   * <p>
+   * 固定启动处理器数个工作任务，当前线程按1024个一块把数据放入有界队列，工作任务从队列中取块，
+   * 先在本地做预聚合，本地结果按key的hash分成若干分区；之后各个分区并行地用combiner合并，
+   * 分区之间key不重叠，最终结果不需要加锁就能拼出来，热点key也不会在同一把锁上排队。
+   * 合并的顺序不确定，combiner需要满足结合律和交换律，并且不能返回null
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param toKey a {@link java.util.function.Function} object
+   * @param reducer a {@link com.trigram.zero.flow.Reducer} object
+   * @param combiner 合并两个部分收束结果，可以直接修改并返回第一个参数
+   * @param <K> a K class
+   * @param <V> a V class
+   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   */
+  default <K, V> MapZeroFlow<K, V> groupByConcurrent(
+      Async async, Function<T, K> toKey, Reducer<T, V> reducer, BinaryOperator<V> combiner
+  ) {
+
+    Supplier<V>                 supplier    = reducer.supplier();
+    BiConsumer<V, T>            accumulator = reducer.accumulator();
+    Consumer<V>                 finisher    = reducer.finisher();
+    int                                 workers = Runtime.getRuntime().availableProcessors();
+    int                                 mask    = Integer.highestOneBit(workers * 2 - 1) - 1;
+    Collection<List<Map<K, V>>>         parts   = new ConcurrentLinkedQueue<>();
+    ArrayBlockingQueue<ListZeroFlow<T>> chunks  = new ArrayBlockingQueue<>(workers * 2);
+    ListZeroFlow<T>                     end     = new ArrayListZeroFlow<>(0);
+    AtomicReference<Throwable>          error   = new AtomicReference<>();
+    List<Object>                        tasks   = new ArrayList<>(workers);
+    for (int w = 0; w < workers; w++) {
+      tasks.add(async.submit(() -> {
+        List<Map<K, V>> maps = new ArrayList<>(mask + 1);
+        for (int i = 0; i <= mask; i++) {
+          maps.add(new HashMap<>());
+        }
+        parts.add(maps);
+        try {
+          // 出错之后仍然取走分块直到结束标记，生产者不会因为队列满而一直阻塞
+          for (ListZeroFlow<T> chunk = chunks.take(); chunk != end; chunk = chunks.take()) {
+            if (error.get() != null) {
+              continue;
+            }
+            try {
+              chunk.consume(t -> {
+                K   k = toKey.apply(t);
+                int h = k == null ? 0 : k.hashCode();
+                accumulator.accept(maps.get((h ^ h >>> 16) & mask).computeIfAbsent(k, x -> supplier.get()), t);
+              });
+            } catch (Throwable e) {
+              error.compareAndSet(null, e);
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          error.compareAndSet(null, e);
+        }
+      }));
+    }
+    try {
+      chunked(1024).consumeTillStop(chunk -> {
+        if (error.get() != null) {
+          stop();
+        }
+        Async.apply(() -> chunks.put(chunk));
+      });
+    } finally {
+      for (int w = 0; w < workers; w++) {
+        Async.apply(() -> chunks.put(end));
+      }
+      tasks.forEach(async::join);
+    }
+    if (error.get() != null) {
+      throw BatchChannel.rethrow(error.get());
+    }
+    List<Map<K, V>> merged = new ArrayList<>(Collections.nCopies(mask + 1, null));
+    async.joinAll(c -> {
+      for (int p = 0; p <= mask; p++) {
+        int i = p;
+        c.accept(() -> {
+          Map<K, V> into = new HashMap<>();
+          for (List<Map<K, V>> local : parts) {
+            Map<K, V> m = local.get(i);
+            if (m.size() > into.size()) {
+              Map<K, V> swap = into;
+              into = m;
+              m    = swap;
+            }
+            Map<K, V> target = into;
+            m.forEach((k, v) -> target.merge(k, v, combiner));
+          }
+          if (finisher != null) {
+            into.values().forEach(finisher);
+          }
+          merged.set(i, into);
+        });
+      }
+    });
+    int size = 0;
+    for (Map<K, V> m : merged) {
+      size += m.size();
+    }
+    MapZeroFlow<K, V> res = MapZeroFlow.hash(JoinTable.capacity(size));
+    for (Map<K, V> m : merged) {
+      res.putAll(m);
+    }
+    return res;
+  }
+
+  /**
+   * 多线程分组，见{@link #groupByConcurrent(Async, Function, Reducer, BinaryOperator)}，组内数据的顺序不确定
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param toKey a {@link java.util.function.Function} object
+   * @param <K> a K class
+   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   */
+  default <K> MapZeroFlow<K, ListZeroFlow<T>> groupByConcurrent(Async async, Function<T, K> toKey) {
+
+    return groupByConcurrent(async, toKey, Reducer.toList(), (a, b) -> {
+      a.addAll(b);
+      return a;
+    });
+  }
+
+  /**
+   * 多线程分组归约，见{@link #groupByConcurrent(Async, Function, Reducer, BinaryOperator)}
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param toKey a {@link java.util.function.Function} object
+   * @param operator 同时用于组内归约和部分结果的合并
+   * @param <K> a K class
+   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   */
+  default <K> MapZeroFlow<K, T> groupByConcurrent(Async async, Function<T, K> toKey, BinaryOperator<T> operator) {
+
+    Reducer<T, Mutable<T>> reducer = Reducer.of(() -> new Mutable<>(null), (m, t) -> {
+      if (m.isSet) {
+        m.it = operator.apply(m.it, t);
+      } else {
+        m.set(t);
+      }
+    });
+    return groupByConcurrent(async, toKey, reducer, (a, b) -> {
+      if (!a.isSet) {
+        return b;
+      }
+      if (b.isSet) {
+        a.it = operator.apply(a.it, b.it);
+      }
+      return a;
+    }).replaceValue(Mutable::get);
+  }
+
+  /**
+   * 对按key聚集的数据流式分组：key变化时立刻产出上一组，任何时刻只保留一个组的收束结果
+   * <p>
+   * 与{@link #groupBy(Function, Reducer)}不同，不相邻的相同key会分成不同的组，适合已按key排序的大数据量流式聚合
+   *
+   * @param toKey
+   *     分组的key，用equals判断是否变化
+   * @param reducer
+   *     每组数据的收束器
+   * @param <K> a K class
+   * @param <V> a V class
+   * @return a {@link com.trigram.zero.flow.pair.PairZeroFlow} object
+   */
+  default <K, V> PairZeroFlow<K, V> groupAdjacent(Function<T, K> toKey, Reducer<T, V> reducer) {
+
+    Supplier<V>      supplier    = reducer.supplier();
+    BiConsumer<V, T> accumulator = reducer.accumulator();
+    Consumer<V>      finisher    = reducer.finisher();
+    return c -> {
+      Pair<K, V> group = reduce(new Pair<>(null, null), (p, t) -> {
+        K k = toKey.apply(t);
+        if (p.second == null || !Objects.equals(p.first, k)) {
+          if (p.second != null) {
+            // key变化，产出上一组
+            if (finisher != null) {
+              finisher.accept(p.second);
+            }
+            c.accept(p.first, p.second);
+          }
+          p.set(k, supplier.get());
+        }
+        accumulator.accept(p.second, t);
+      });
+      if (group.second != null) {
+        if (finisher != null) {
+          finisher.accept(group.second);
+        }
+        c.accept(group.first, group.second);
+      }
+    };
+  }
+
+  /**
+   * <p>groupAdjacent.</p>
    *
-   * @param times a int
-   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @see #groupAdjacent(Function, Reducer)
+   * @param toKey a {@link java.util.function.Function} object
+   * @param transducer a {@link com.trigram.zero.flow.Transducer} object
+   * @param <K> a K class
+   * @param <V> a V class
+   * @param <E> a E class
+   * @return a {@link com.trigram.zero.flow.pair.PairZeroFlow} object
    */
-  default ZeroFlow<T> duplicateAll(int times) {
+  default <K, V, E> PairZeroFlow<K, E> groupAdjacent(Function<T, K> toKey, Transducer<T, V, E> transducer) {
 
-    return c -> {
-      for (int i = 0; i < times; i++) {
-        consume(c);
-      }
-    };
+    return groupAdjacent(toKey, transducer.reducer()).mapValue(transducer.transformer());
   }
 
   /**
-   * 每个数据复制多少次继续传递给后续处理
+   * <p>groupAdjacent.</p>
    *
-   * @param times a int
-   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @see #groupAdjacent(Function, Reducer)
+   * @param toKey a {@link java.util.function.Function} object
+   * @param <K> a K class
+   * @return a {@link com.trigram.zero.flow.pair.PairZeroFlow} object
    */
-  default ZeroFlow<T> duplicateEach(int times) {
+  default <K> PairZeroFlow<K, ListZeroFlow<T>> groupAdjacent(Function<T, K> toKey) {
 
-    return c -> consume(t -> {
-      for (int i = 0; i < times; i++) {
-        c.accept(t);
-      }
-    });
+    return groupAdjacent(toKey, Reducer.toList());
   }
 
   /**
-   * 只有条件的数据才复制
+   * 将key相同的相邻数据切分成一段段的列表
    *
-   * @see #duplicateEach(int)
-   * @param times a int
-   * @param predicate a {@link java.util.function.Predicate} object
+   * @see #groupAdjacent(Function, Reducer)
+   * @param toKey a {@link java.util.function.Function} object
+   * @param <K> a K class
    * @return a {@link com.trigram.zero.flow.ZeroFlow} object
    */
-  default ZeroFlow<T> duplicateIf(int times, Predicate<T> predicate) {
+  default <K> ZeroFlow<ListZeroFlow<T>> runs(Function<T, K> toKey) {
 
-    return c -> consume(t -> {
-      if (predicate.test(t)) {
-        for (int i = 0; i < times; i++) {
-          c.accept(t);
-        }
-      } else {
-        c.accept(t);
-      }
-    });
+    return groupAdjacent(toKey).justValues();
   }
 
   /**
-   * <p>groupBy.</p>
-   *
-   * @param toKey a {@link java.util.function.Function} object
+   * 哈希内连接。用较小的一侧构建预分配容量的哈希表，另一侧流式探测
+   * <p>
+   * 只有两侧都是{@link SizedZeroFlow}且本流更小时才用本流构建，否则总是用other构建。key为null的数据不参与匹配
+   *
+   * @param other
+   *     另一侧的流
+   * @param leftKey
+   *     本流数据的key
+   * @param rightKey
+   *     另一侧数据的key
+   * @param combiner
+   *     key相同的两侧数据合并成一个结果
+   * @param <E> a E class
    * @param <K> a K class
-   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   * @param <R> a R class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
    */
-  default <K> MapZeroFlow<K, ListZeroFlow<T>> groupBy(Function<T, K> toKey) {
+  default <E, K, R> ZeroFlow<R> hashJoin(
+      ZeroFlow<E> other, Function<T, K> leftKey, Function<E, K> rightKey, BiFunction<T, E, R> combiner
+  ) {
 
-    return groupBy(toKey, Reducer.toList());
+    if (this instanceof SizedZeroFlow && other instanceof SizedZeroFlow
+        && ((SizedZeroFlow<T>) this).size() < ((SizedZeroFlow<E>) other).size()) {
+      return c -> {
+        JoinTable<K, T> table = new JoinTable<>(sizeOrDefault());
+        consume(t -> table.put(leftKey.apply(t), t));
+        other.consume(e -> table.match(rightKey.apply(e), t -> c.accept(combiner.apply(t, e))));
+      };
+    }
+    return c -> {
+      JoinTable<K, E> table = new JoinTable<>(other.sizeOrDefault());
+      other.consume(e -> table.put(rightKey.apply(e), e));
+      consume(t -> table.match(leftKey.apply(t), e -> c.accept(combiner.apply(t, e))));
+    };
   }
 
   /**
-   * <p>groupBy.</p>
+   * 哈希左连接。用other构建哈希表，本流的数据没有匹配时combiner的第二个参数为null
    *
-   * @param toKey a {@link java.util.function.Function} object
-   * @param reducer a {@link com.trigram.zero.flow.Reducer} object
+   * @see #hashJoin(ZeroFlow, Function, Function, BiFunction)
+   * @param other a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @param leftKey a {@link java.util.function.Function} object
+   * @param rightKey a {@link java.util.function.Function} object
+   * @param combiner a {@link java.util.function.BiFunction} object
+   * @param <E> a E class
    * @param <K> a K class
-   * @param <V> a V class
-   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   * @param <R> a R class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
    */
-  default <K, V> MapZeroFlow<K, V> groupBy(Function<T, K> toKey, Reducer<T, V> reducer) {
+  default <E, K, R> ZeroFlow<R> leftJoin(
+      ZeroFlow<E> other, Function<T, K> leftKey, Function<E, K> rightKey, BiFunction<T, E, R> combiner
+  ) {
 
-    return reduce(Reducer.toMap(HashMap::new, toKey, reducer));
+    return c -> {
+      JoinTable<K, E> table = new JoinTable<>(other.sizeOrDefault());
+      other.consume(e -> table.put(rightKey.apply(e), e));
+      consume(t -> {
+        if (!table.match(leftKey.apply(t), e -> c.accept(combiner.apply(t, e)))) {
+          c.accept(combiner.apply(t, null));
+        }
+      });
+    };
   }
 
   /**
-   * <p>groupBy.</p>
+   * 哈希半连接，只保留在other中存在相同key的数据，每个数据最多出现一次
    *
-   * @param toKey a {@link java.util.function.Function} object
-   * @param operator a {@link java.util.function.BinaryOperator} object
+   * @param other a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @param leftKey a {@link java.util.function.Function} object
+   * @param rightKey a {@link java.util.function.Function} object
+   * @param <E> a E class
    * @param <K> a K class
-   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
    */
-  default <K> MapZeroFlow<K, T> groupBy(Function<T, K> toKey, BinaryOperator<T> operator) {
+  default <E, K> ZeroFlow<T> semiJoin(ZeroFlow<E> other, Function<T, K> leftKey, Function<E, K> rightKey) {
 
-    return groupBy(toKey, Transducer.of(operator));
+    return c -> {
+      Set<K> keys = new HashSet<>(JoinTable.capacity(other.sizeOrDefault()));
+      other.consume(e -> keys.add(rightKey.apply(e)));
+      keys.remove(null);
+      consume(t -> {
+        if (keys.contains(leftKey.apply(t))) {
+          c.accept(t);
+        }
+      });
+    };
   }
 
   /**
-   * <p>groupBy.</p>
+   * 哈希反连接，只保留在other中不存在相同key的数据
    *
-   * @param toKey a {@link java.util.function.Function} object
-   * @param transducer a {@link com.trigram.zero.flow.Transducer} object
-   * @param <K> a K class
-   * @param <V> a V class
+   * @param other a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @param leftKey a {@link java.util.function.Function} object
+   * @param rightKey a {@link java.util.function.Function} object
    * @param <E> a E class
-   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   * @param <K> a K class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
    */
-  default <K, V, E> MapZeroFlow<K, E> groupBy(Function<T, K> toKey, Transducer<T, V, E> transducer) {
+  default <E, K> ZeroFlow<T> antiJoin(ZeroFlow<E> other, Function<T, K> leftKey, Function<E, K> rightKey) {
 
-    return reduce(Reducer.toMap(HashMap::new, toKey, transducer));
+    return c -> {
+      Set<K> keys = new HashSet<>(JoinTable.capacity(other.sizeOrDefault()));
+      other.consume(e -> keys.add(rightKey.apply(e)));
+      keys.remove(null);
+      consume(t -> {
+        if (!keys.contains(leftKey.apply(t))) {
+          c.accept(t);
+        }
+      });
+    };
   }
 
   /**
-   * <p>groupBy.</p>
-   *
-   * @param toKey a {@link java.util.function.Function} object
-   * @param toValue a {@link java.util.function.Function} object
-   * @param <K> a K class
+   * 归并内连接，本流与other都必须按keyCmp对key排好序
+   * <p>
+   * 本流推送数据，other被单向拉取，只缓存other中当前一段key相同的数据，两侧都不需要哈希或重新排序。key为null的数据不参与匹配
+   *
+   * @param other
+   *     已按key排序的另一侧
+   * @param keyCmp
+   *     key的排序规则
+   * @param leftKey
+   *     本流数据的key
+   * @param rightKey
+   *     另一侧数据的key
+   * @param combiner
+   *     key相同的两侧数据合并成一个结果
    * @param <E> a E class
-   * @return a {@link com.trigram.zero.flow.MapZeroFlow} object
+   * @param <K> a K class
+   * @param <R> a R class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
    */
-  default <K, E> MapZeroFlow<K, ListZeroFlow<E>> groupBy(Function<T, K> toKey, Function<T, E> toValue) {
+  default <E, K, R> ZeroFlow<R> sortMergeJoin(
+      Iterable<E> other, Comparator<K> keyCmp, Function<T, K> leftKey, Function<E, K> rightKey,
+      BiFunction<T, E, R> combiner
+  ) {
 
-    return groupBy(toKey, Reducer.mapping(toValue));
+    return c -> {
+      Iterator<E>     iterator = other.iterator();
+      RunCursor<E, K> cursor   = new RunCursor<>(iterator, rightKey, keyCmp);
+      try {
+        consumeTillStop(t -> {
+          K k = leftKey.apply(t);
+          if (k == null) {
+            return;
+          }
+          if (cursor.seek(k)) {
+            for (E e : cursor.run()) {
+              c.accept(combiner.apply(t, e));
+            }
+          } else if (cursor.isDone(k)) {
+            // 另一侧已经耗尽，后续数据不可能再匹配
+            stop();
+          }
+        });
+      } finally {
+        ItrUtil.close(iterator);
+      }
+    };
   }
 
   /**
@@ -1803,6 +2632,18 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return c -> async.joinAll(map(t -> () -> c.accept(t)));
   }
 
+  /**
+   * 可以取消的并行处理，取消后不再提交新的任务，已提交但还没开始的任务直接跳过
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param cancellation a {@link com.trigram.zero.flow.Cancellation} object
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<T> parallel(Async async, Cancellation cancellation) {
+
+    return cancelOn(cancellation).parallel(async.cancellable(cancellation));
+  }
+
   /**
    * <p>parallelNoJoin.</p>
    *
@@ -1824,6 +2665,64 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return c -> consume(t -> async.submit(() -> c.accept(t)));
   }
 
+  /**
+   * 按key分区并行处理，同一个key的数据总是由同一个线程按原顺序处理，不同key之间并行
+   * <p>
+   * 数据源和每个分区各占用async的一个线程，分区之间经过有界缓冲传递，调用后立刻返回，
+   * 通过{@link LaneGroup#join()}等待处理完，通过{@link LaneGroup#depths()}观察各分区的积压
+   *
+   * @param async 需要能同时提供partitions + 1个线程
+   * @param toKey a {@link java.util.function.Function} object
+   * @param partitions 分区的数量
+   * @param consumer 处理数据，会在多个线程中同时调用，但同一个key只会在一个线程中调用
+   * @param <K> a K class
+   * @return a {@link com.trigram.zero.flow.LaneGroup} object
+   */
+  default <K> LaneGroup<T> partitionBy(Async async, Function<T, K> toKey, int partitions, Consumer<T> consumer) {
+
+    return new LaneGroup<>(async, this, toKey, partitions, 1024, consumer);
+  }
+
+  /**
+   * 同{@link #partitionBy(Async, Function, int, Consumer)}，每个分区使用一个守护线程
+   *
+   * @param toKey a {@link java.util.function.Function} object
+   * @param partitions 分区的数量
+   * @param consumer a {@link java.util.function.Consumer} object
+   * @param <K> a K class
+   * @return a {@link com.trigram.zero.flow.LaneGroup} object
+   */
+  default <K> LaneGroup<T> partitionBy(Function<T, K> toKey, int partitions, Consumer<T> consumer) {
+
+    return partitionBy(Async.daemon(), toKey, partitions, consumer);
+  }
+
+  /**
+   * 在此处切分流水线：上游在后台守护线程中运行，下游在当前线程中运行，两段之间经过有界缓冲分批传递，顺序不变
+   * <p>
+   * 例如{@code source.map(parse).pipelined(1024).map(enrich).pipelined(1024).map(encode)}会让三个阶段分别占用一个线程。
+   * 下游停止后上游随之停止，上游的异常会在下游线程重新抛出
+   *
+   * @param bufferSize 两段之间最多缓冲的数据量
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<T> pipelined(int bufferSize) {
+
+    return async(Async.daemon(), bufferSize);
+  }
+
+  /**
+   * 同{@link #pipelined(int)}，上游在async提供的线程中运行，运行期间会一直占用这个线程
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param bufferSize 两段之间最多缓冲的数据量
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<T> async(Async async, int bufferSize) {
+
+    return c -> new BatchChannel<T>(bufferSize).produce(async, this).consume(c);
+  }
+
   /**
    * <p>println.</p>
    */
@@ -2112,18 +3011,115 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return takeWhile(function, Objects::equals);
   }
 
+  /**
+   * 一次遍历同时驱动多个下游处理，适合对代价很高的数据源计算多个结果，无需重复读取或者缓存全部数据
+   * <p>
+   * 每个分支在单独的守护线程中消费自己的{@link ZeroFlow}，包括其中的终止操作以及take、first这类提前停止的操作；
+   * 当前线程遍历数据源并分批传给各个分支，所有分支都停止后数据源也随之停止。分支中的异常会在当前线程重新抛出
+   *
+   * @param branches 各个分支的处理
+   */
+  @SuppressWarnings("unchecked")
+  default void tee(Consumer<ZeroFlow<T>>... branches) {
+
+    tee(Async.daemon(), 1024, branches);
+  }
+
+  /**
+   * 同{@link #tee(Consumer[])}，async需要能为每个分支同时提供一个线程，否则分支之间会互相等待
+   *
+   * @param async a {@link com.trigram.zero.flow.Async} object
+   * @param bufferSize 每个分支最多缓冲的数据量
+   * @param branches 各个分支的处理
+   */
+  @SuppressWarnings("unchecked")
+  default void tee(Async async, int bufferSize, Consumer<ZeroFlow<T>>... branches) {
+
+    int                        n        = branches.length;
+    List<BatchChannel<T>>      channels = new ArrayList<>(n);
+    Object[]                   tasks    = new Object[n];
+    AtomicReference<Throwable> error    = new AtomicReference<>();
+    for (int i = 0; i < n; i++) {
+      BatchChannel<T>       channel = new BatchChannel<>(bufferSize);
+      Consumer<ZeroFlow<T>> branch  = branches[i];
+      channels.add(channel);
+      tasks[i] = async.submit(() -> {
+        try {
+          branch.accept(channel);
+        } catch (Throwable e) {
+          error.compareAndSet(null, e);
+        } finally {
+          channel.close();
+        }
+      });
+    }
+    try {
+      consumeTillStop(t -> {
+        boolean alive = false;
+        for (BatchChannel<T> channel : channels) {
+          alive |= channel.offer(t);
+        }
+        if (!alive) {
+          stop();
+        }
+      });
+      for (BatchChannel<T> channel : channels) {
+        channel.complete();
+      }
+    } catch (Throwable e) {
+      for (BatchChannel<T> channel : channels) {
+        channel.fail(e);
+      }
+      throw e;
+    } finally {
+      for (Object task : tasks) {
+        async.join(task);
+      }
+    }
+    if (error.get() != null) {
+      throw BatchChannel.rethrow(error.get());
+    }
+  }
+
   /**
    * 限时处理数据，超时停止
+   * <p>
+   * 由共享的{@link TimerWheel}到期时设置标记，每个数据只需要读一次标记，不需要读取时钟
    *
    * @param millis a long
    * @return a {@link com.trigram.zero.flow.ZeroFlow} object
    */
   default ZeroFlow<T> timeLimit(long millis) {
 
-    return millis * 1000000 <= 0 ? this : c -> {
-      long end = System.nanoTime() + millis;
+    return millis <= 0 ? this : c -> {
+      AtomicBoolean      expired = new AtomicBoolean();
+      TimerWheel.Timeout timeout = TimerWheel.shared().schedule(() -> expired.set(true), millis, TimeUnit.MILLISECONDS);
+      try {
+        consumeTillStop(t -> {
+          if (expired.get()) {
+            stop();
+          }
+          c.accept(t);
+        });
+      } finally {
+        timeout.cancel();
+      }
+    };
+  }
+
+  /**
+   * 按指定的时钟限时处理数据，每个数据读一次时钟，配合{@link Clock#manual(long)}可以得到确定的结果
+   *
+   * @param millis a long
+   * @param clock a {@link com.trigram.zero.flow.Clock} object
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default ZeroFlow<T> timeLimit(long millis, Clock clock) {
+
+    return millis <= 0 ? this : c -> {
+      long end = clock.millis() + millis;
       consumeTillStop(t -> {
-        if (System.nanoTime() > end) {
+        if (clock.millis() >= end) {
           stop();
         }
         c.accept(t);
@@ -2508,6 +3504,20 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
    */
   default <V> ZeroFlow<V> windowedByTime(long timeMillis, Reducer<T, V> reducer) {
 
+    return windowedByTime(timeMillis, reducer, Clock.coarse());
+  }
+
+  /**
+   * 同{@link #windowedByTime(long, Reducer)}，使用指定的时钟，每个数据读一次时钟
+   *
+   * @param timeMillis a long
+   * @param reducer a {@link com.trigram.zero.flow.Reducer} object
+   * @param clock a {@link com.trigram.zero.flow.Clock} object
+   * @param <V> a V class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default <V> ZeroFlow<V> windowedByTime(long timeMillis, Reducer<T, V> reducer, Clock clock) {
+
     if (timeMillis <= 0) {
       throw new IllegalArgumentException("non-positive time");
     }
@@ -2515,8 +3525,8 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
       Supplier<V>      supplier    = reducer.supplier();
       BiConsumer<V, T> accumulator = reducer.accumulator();
       Consumer<V>      finisher    = reducer.finisher();
-      reduce(new LongPair<>(System.currentTimeMillis(), supplier.get()), (p, t) -> {
-        long now = System.currentTimeMillis();
+      reduce(new LongPair<>(clock.millis(), supplier.get()), (p, t) -> {
+        long now = clock.millis();
         if (now - p.first > timeMillis) {
           // 超过给定的时间时隔就重置窗口开始时间
           p.first = now;
@@ -2547,6 +3557,21 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
    */
   default <V> ZeroFlow<V> windowedByTime(long timeMillis, long stepMillis, Reducer<T, V> reducer) {
 
+    return windowedByTime(timeMillis, stepMillis, reducer, Clock.coarse());
+  }
+
+  /**
+   * 同{@link #windowedByTime(long, long, Reducer)}，使用指定的时钟，每个数据读一次时钟
+   *
+   * @param timeMillis a long
+   * @param stepMillis a long
+   * @param reducer a {@link com.trigram.zero.flow.Reducer} object
+   * @param clock a {@link com.trigram.zero.flow.Clock} object
+   * @param <V> a V class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default <V> ZeroFlow<V> windowedByTime(long timeMillis, long stepMillis, Reducer<T, V> reducer, Clock clock) {
+
     if (timeMillis <= 0 || stepMillis <= 0) {
       throw new IllegalArgumentException("non-positive time or step");
     }
@@ -2555,22 +3580,22 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
       BiConsumer<V, T>   accumulator = reducer.accumulator();
       Consumer<V>        finisher    = reducer.finisher();
       Queue<LongPair<V>> queue       = new LinkedList<>();
-      long[]             last        = {System.currentTimeMillis(), 0};
+      long[]             last        = {clock.millis(), 0};
       reduce(last, (a, t) -> {
+        long now = clock.millis();
         if (a[1] <= 0) {
           a[1] = stepMillis;
-          queue.offer(new LongPair<>(System.currentTimeMillis(), supplier.get()));
+          queue.offer(new LongPair<>(now, supplier.get()));
         }
         queue.forEach(sub -> accumulator.accept(sub.second, t));
         LongPair<V> first = queue.peek();
-        if (first != null && System.currentTimeMillis() - first.first > timeMillis) {
+        if (first != null && now - first.first > timeMillis) {
           queue.poll();
           if (finisher != null) {
             finisher.accept(first.second);
           }
           c.accept(first.second);
         }
-        long now = System.currentTimeMillis();
         a[1] -= now - a[0];
         a[0] = now;
       });
@@ -2687,6 +3712,66 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
     return c -> consumeIndexed((i, t) -> c.accept(new IntPair<>(i, t)));
   }
 
+  /**
+   * 两个流并发生产，按顺序一一配对，任意一边结束时停止
+   * <p>
+   * 与{@link #zip(Iterable)}不同，两边都可以是只能推送的流，各自在async提供的线程中遍历，经过有界缓冲交给当前线程
+   *
+   * @param async 需要能同时提供两个线程
+   * @param other a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @param function a {@link java.util.function.BiFunction} object
+   * @param <E> a E class
+   * @param <R> a R class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  default <E, R> ZeroFlow<R> zipConcurrent(Async async, ZeroFlow<E> other, BiFunction<T, E, R> function) {
+
+    return c -> {
+      BatchChannel<T> left  = new BatchChannel<T>(1024).produce(async, this);
+      BatchChannel<E> right = new BatchChannel<E>(1024).produce(async, other);
+      try {
+        Iterator<T> li = left.iterator();
+        Iterator<E> ri = right.iterator();
+        while (li.hasNext() && ri.hasNext()) {
+          c.accept(function.apply(li.next(), ri.next()));
+        }
+      } finally {
+        left.close();
+        right.close();
+      }
+    };
+  }
+
+  /**
+   * 两个流并发生产，任意一边有新数据时，与另一边最近的数据组合输出，两边都有数据之后才开始输出
+   *
+   * @param async 需要能同时提供两个线程
+   * @param other a {@link com.trigram.zero.flow.ZeroFlow} object
+   * @param function a {@link java.util.function.BiFunction} object
+   * @param <E> a E class
+   * @param <R> a R class
+   * @return a {@link com.trigram.zero.flow.ZeroFlow} object
+   */
+  @SuppressWarnings("unchecked")
+  default <E, R> ZeroFlow<R> zipLatest(Async async, ZeroFlow<E> other, BiFunction<T, E, R> function) {
+
+    return c -> {
+      Object[]  latest = new Object[2];
+      boolean[] seen   = new boolean[2];
+      ZeroFlow.<IntPair<Object>>merge(
+          async,
+          map(t -> new IntPair<Object>(0, t)),
+          other.map(e -> new IntPair<Object>(1, e))
+      ).consume(p -> {
+        latest[p.first] = p.second;
+        seen[p.first]   = true;
+        if (seen[0] && seen[1]) {
+          c.accept(function.apply((T) latest[0], (E) latest[1]));
+        }
+      });
+    };
+  }
+
   /**
    * <p>zip.</p>
    *
@@ -2714,7 +3799,12 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
 
     Iterator<B> bi = bs.iterator();
     Iterator<C> ci = cs.iterator();
-    consumeTillStop(t -> consumer.accept(t, ItrUtil.pop(bi), ItrUtil.pop(ci)));
+    try {
+      consumeTillStop(t -> consumer.accept(t, ItrUtil.pop(bi), ItrUtil.pop(ci)));
+    } finally {
+      ItrUtil.close(bi);
+      ItrUtil.close(ci);
+    }
   }
 
   /**
@@ -2739,7 +3829,11 @@ public interface ZeroFlow<T> extends BaseZeroFlow<Consumer<T>> {
   default <E> void zip(Iterable<E> iterable, BiConsumer<T, E> consumer) {
 
     Iterator<E> iterator = iterable.iterator();
-    consumeTillStop(t -> consumer.accept(t, ItrUtil.pop(iterator)));
+    try {
+      consumeTillStop(t -> consumer.accept(t, ItrUtil.pop(iterator)));
+    } finally {
+      ItrUtil.close(iterator);
+    }
   }
 
   /**
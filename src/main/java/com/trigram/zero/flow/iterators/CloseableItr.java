@@ -0,0 +1,51 @@
+package com.trigram.zero.flow.iterators;
+
+import java.util.Iterator;
+
+/**
+ * 背后占用线程或者资源的迭代器，中途放弃时应调用{@link #close()}立即释放，而不是等待回收
+ *
+ * @author Truma
+ */
+public interface CloseableItr<T> extends Iterator<T>, AutoCloseable {
+
+  /**
+   * 包装不占用资源的迭代器，关闭时什么也不做
+   *
+   * @param iterator a {@link java.util.Iterator} object
+   * @param <T> a T class
+   * @return a {@link com.trigram.zero.flow.iterators.CloseableItr} object
+   */
+  static <T> CloseableItr<T> of(Iterator<T> iterator) {
+
+    if (iterator instanceof CloseableItr) {
+      return (CloseableItr<T>) iterator;
+    }
+    return new CloseableItr<T>() {
+
+      @Override
+      public boolean hasNext() {
+
+        return iterator.hasNext();
+      }
+
+      @Override
+      public T next() {
+
+        return iterator.next();
+      }
+
+      @Override
+      public void close() {
+
+      }
+    };
+  }
+
+  /**
+   * 释放迭代器背后的资源，之后不会再有数据，可以重复调用
+   */
+  @Override
+  void close();
+
+}
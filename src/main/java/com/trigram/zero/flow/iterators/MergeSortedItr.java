@@ -0,0 +1,131 @@
+package com.trigram.zero.flow.iterators;
+
+import com.trigram.zero.flow.ZeroFlow;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 对多个已排序迭代器进行k路归并的迭代器
+ * <p>
+ * 内部使用败者树，每取出一个数据只需要log(k)次比较，每路只缓存一个当前数据。相等的数据按迭代器的顺序输出
+ *
+ * @author Truma
+ */
+public class MergeSortedItr<T> extends PickItr<T> {
+
+  private final List<Iterator<T>> iterators;
+
+  private final Comparator<T> comparator;
+
+  private final Object[] heads;
+
+  private final boolean[] alive;
+
+  /**
+   * 败者树，下标0存放胜者，其余内部节点存放败者
+   */
+  private final int[] tree;
+
+  private final int k;
+
+  private boolean built;
+
+  /**
+   * <p>Constructor for MergeSortedItr.</p>
+   *
+   * @param comparator a {@link java.util.Comparator} object
+   * @param iterators a {@link java.util.List} of {@link java.util.Iterator} objects
+   */
+  public MergeSortedItr(Comparator<T> comparator, List<Iterator<T>> iterators) {
+
+    this.comparator = comparator;
+    this.iterators  = iterators;
+    this.k          = iterators.size();
+    this.heads      = new Object[k];
+    this.alive      = new boolean[k];
+    this.tree       = new int[Math.max(k, 1)];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T pick() {
+
+    if (!built) {
+      build();
+    }
+    int winner = tree[0];
+    if (k == 0 || !alive[winner]) {
+      return ZeroFlow.stop();
+    }
+    T res = (T) heads[winner];
+    advance(winner);
+    replay(winner);
+    return res;
+  }
+
+  private void build() {
+
+    built = true;
+    for (int i = 0; i < k; i++) {
+      advance(i);
+    }
+    if (k > 1) {
+      tree[0] = build(1);
+    }
+  }
+
+  private int build(int node) {
+
+    if (node >= k) {
+      return node - k;
+    }
+    int left  = build(node << 1);
+    int right = build((node << 1) + 1);
+    if (beats(left, right)) {
+      tree[node] = right;
+      return left;
+    }
+    tree[node] = left;
+    return right;
+  }
+
+  private void replay(int winner) {
+
+    for (int node = (winner + k) >> 1; node > 0; node >>= 1) {
+      int loser = tree[node];
+      if (beats(loser, winner)) {
+        tree[node] = winner;
+        winner     = loser;
+      }
+    }
+    tree[0] = winner;
+  }
+
+  private void advance(int i) {
+
+    Iterator<T> iterator = iterators.get(i);
+    if (iterator.hasNext()) {
+      heads[i] = iterator.next();
+      alive[i] = true;
+    } else {
+      heads[i] = null;
+      alive[i] = false;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private boolean beats(int a, int b) {
+
+    if (!alive[a]) {
+      return false;
+    }
+    if (!alive[b]) {
+      return true;
+    }
+    int cmp = comparator.compare((T) heads[a], (T) heads[b]);
+    return cmp < 0 || cmp == 0 && a < b;
+  }
+
+}
@@ -0,0 +1,120 @@
+package com.trigram.zero.flow.iterators;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 在按key排序的迭代器上单向移动的游标，每次定位到一段key相同的连续数据
+ * <p>
+ * 只缓存当前这一段数据，并且复用同一个列表，用于归并连接这类只需要向前扫描的场景。key为null的数据被跳过
+ *
+ * @author Truma
+ */
+public class RunCursor<T, K> {
+
+  private final Iterator<T> iterator;
+
+  private final Function<T, K> toKey;
+
+  private final Comparator<K> comparator;
+
+  private final ArrayList<T> run = new ArrayList<>();
+
+  private T head;
+
+  private K headKey;
+
+  private boolean hasHead;
+
+  private K runKey;
+
+  private boolean hasRun;
+
+  /**
+   * <p>Constructor for RunCursor.</p>
+   *
+   * @param iterator a {@link java.util.Iterator} object
+   * @param toKey a {@link java.util.function.Function} object
+   * @param comparator a {@link java.util.Comparator} object
+   */
+  public RunCursor(Iterator<T> iterator, Function<T, K> toKey, Comparator<K> comparator) {
+
+    this.iterator   = iterator;
+    this.toKey      = toKey;
+    this.comparator = comparator;
+    advance();
+  }
+
+  /**
+   * 定位到key对应的数据段，key必须不小于上一次定位的key
+   *
+   * @param key a K object
+   * @return 是否存在key对应的数据
+   */
+  public boolean seek(K key) {
+
+    if (hasRun) {
+      int cmp = comparator.compare(runKey, key);
+      if (cmp >= 0) {
+        return cmp == 0;
+      }
+      run.clear();
+      hasRun = false;
+    }
+    while (hasHead && comparator.compare(headKey, key) < 0) {
+      advance();
+    }
+    if (!hasHead || comparator.compare(headKey, key) > 0) {
+      return false;
+    }
+    runKey = headKey;
+    do {
+      run.add(head);
+      advance();
+    } while (hasHead && comparator.compare(headKey, runKey) == 0);
+    hasRun = true;
+    return true;
+  }
+
+  /**
+   * 当前定位到的数据段，只在{@link #seek(Object)}返回true后有效
+   *
+   * @return a {@link java.util.List} object
+   */
+  public List<T> run() {
+
+    return run;
+  }
+
+  /**
+   * 不小于key的数据是否已经不可能再匹配
+   *
+   * @param key a K object
+   * @return a boolean
+   */
+  public boolean isDone(K key) {
+
+    return !hasHead && (!hasRun || comparator.compare(runKey, key) < 0);
+  }
+
+  private void advance() {
+
+    while (iterator.hasNext()) {
+      T t = iterator.next();
+      K k = toKey.apply(t);
+      if (k != null) {
+        head    = t;
+        headKey = k;
+        hasHead = true;
+        return;
+      }
+    }
+    head    = null;
+    headKey = null;
+    hasHead = false;
+  }
+
+}
@@ -1,21 +1,56 @@
 package com.trigram.wolray.zero.flow;
 
 import com.trigram.zero.flow.ArrayListZeroFlow;
+import com.trigram.zero.flow.Async;
+import com.trigram.zero.flow.AsyncZeroFlow;
 import com.trigram.zero.flow.BatchedZeroFlow;
+import com.trigram.zero.flow.ByteSlice;
+import com.trigram.zero.flow.ByteSource;
+import com.trigram.zero.flow.CharSlice;
+import com.trigram.zero.flow.CsvReader;
+import com.trigram.zero.flow.FileSink;
+import com.trigram.zero.flow.Cancellation;
+import com.trigram.zero.flow.Clock;
 import com.trigram.zero.flow.IntZeroFlow;
+import com.trigram.zero.flow.LaneGroup;
 import com.trigram.zero.flow.ListZeroFlow;
 import com.trigram.zero.flow.MapZeroFlow;
+import com.trigram.zero.flow.MappedByteSource;
+import com.trigram.zero.flow.NumberParser;
 import com.trigram.zero.flow.Reducer;
+import com.trigram.zero.flow.Splitter;
+import com.trigram.zero.flow.TimerWheel;
 import com.trigram.zero.flow.ZeroFlow;
+import com.trigram.zero.flow.iterators.CloseableItr;
 import com.trigram.zero.flow.pair.Pair;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
+import java.util.zip.ZipException;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -289,6 +324,873 @@ public class SeqTest {
 //        Seq.ofTreeParallel(n0, 2, n -> Seq.of(n.left, n.right)).map(n -> n.value).printAll(",");
   }
 
+  @Test
+  public void testHashJoin() {
+
+    ZeroFlow<Integer>            left  = ZeroFlow.of(1, 2, 3, 4);
+    ArrayListZeroFlow<String>    right = new ArrayListZeroFlow<>(Arrays.asList("a1", "b2", "c2", "d5"));
+    Function<String, Integer>    key   = s -> s.charAt(1) - '0';
+    assertTo(left.hashJoin(right, i -> i, key, (i, s) -> i + s), "1a1,2b2,2c2");
+    assertTo(left.leftJoin(right, i -> i, key, (i, s) -> i + s), "1a1,2b2,2c2,3null,4null");
+    assertTo(left.semiJoin(right, i -> i, key), "1,2");
+    assertTo(left.antiJoin(right, i -> i, key), "3,4");
+    ListZeroFlow<Integer> small = ZeroFlow.of(2, 5).toList();
+    assertTo(small.hashJoin(right, i -> i, key, (i, s) -> i + s), "2b2,2c2,5d5");
+  }
+
+  @Test
+  public void testMergeSorted() {
+
+    List<Integer> a = Arrays.asList(1, 4, 7, 10);
+    List<Integer> b = Arrays.asList(2, 4, 8);
+    List<Integer> c = Arrays.asList(0, 3, 5, 6, 9, 11);
+    assertTo(ZeroFlow.mergeSorted(Integer::compare, a, b, c), "0,1,2,3,4,4,5,6,7,8,9,10,11");
+    assertTo(ZeroFlow.mergeSorted(Integer::compare, a), "1,4,7,10");
+    assertTo(ZeroFlow.mergeSorted(Integer::compare), "");
+
+    ZeroFlow<Integer> left  = ZeroFlow.of(1, 2, 2, 4, 6, 9);
+    List<String>      right = Arrays.asList("2a", "2b", "3c", "6d", "7e");
+    assertTo(left.sortMergeJoin(right, Integer::compare, i -> i, s -> s.charAt(0) - '0', (i, s) -> i + s),
+        "22a,22b,22a,22b,66d");
+    List<String> nullKeys = Arrays.asList("?x", "2a", "?y", "6d");
+    assertTo(ZeroFlow.of(2, null, 6).sortMergeJoin(nullKeys, Integer::compare, i -> i,
+        s -> s.charAt(0) == '?' ? null : s.charAt(0) - '0', (i, s) -> i + s), "22a,66d");
+  }
+
+  @Test
+  public void testGroupAdjacent() {
+
+    ZeroFlow<Integer> seq = ZeroFlow.of(1, 1, 2, 3, 3, 3, 1);
+    assertTo(seq.groupAdjacent(i -> i, Reducer.count()).map((k, n) -> k + ":" + n), "1:2,2:1,3:3,1:1");
+    assertTo(seq.runs(i -> i), "[1, 1],[2],[3, 3, 3],[1]");
+    assertTo(seq.runs(i -> i).take(2), "[1, 1],[2]");
+    assertTo(ZeroFlow.<Integer>empty().runs(i -> i), "");
+  }
+
+  @Test
+  public void testTee() {
+
+    ZeroFlow<Integer>               seq   = ZeroFlow.gen(1, i -> i + 1);
+    AtomicReference<List<Integer>> head  = new AtomicReference<>();
+    AtomicReference<Integer>        first = new AtomicReference<>();
+    seq.tee(s -> head.set(s.take(5).toList()), s -> first.set(s.filter(i -> i > 3000).first()));
+    assert head.get().equals(Arrays.asList(1, 2, 3, 4, 5));
+    assert first.get() == 3001;
+    AtomicReference<Integer> count = new AtomicReference<>();
+    AtomicReference<Integer> sum   = new AtomicReference<>();
+    ZeroFlow.of(1, 2, 3, 4).tee(s -> count.set(s.count()), s -> sum.set(s.sumInt(i -> i)));
+    assert count.get() == 4 && sum.get() == 10;
+  }
+
+  @Test
+  public void testGroupByConcurrent() {
+
+    ZeroFlow<Integer> seq   = ZeroFlow.gen(0, i -> i + 1).take(100000);
+    Async             async = Async.common();
+    Reducer<Integer, long[]> sum = Reducer.of(() -> new long[1], (a, i) -> a[0] += i);
+    assert seq.groupByConcurrent(async, i -> i % 7, sum, (a, b) -> {
+      a[0] += b[0];
+      return a;
+    }).replaceValue(a -> a[0]).equals(seq.groupBy(i -> i % 7, sum).replaceValue(a -> a[0]));
+    assert seq.groupByConcurrent(async, i -> i % 100, Integer::sum).equals(seq.groupBy(i -> i % 100, Integer::sum));
+    MapZeroFlow<Integer, ListZeroFlow<Integer>> lists = seq.groupByConcurrent(async, i -> i % 3);
+    assert lists.size() == 3 && lists.get(1).size() == 33333;
+    assert ZeroFlow.<Integer>empty().groupByConcurrent(async, i -> i, Integer::sum).isEmpty();
+    assert seq.groupByConcurrent(Async.daemon(), i -> i % 100, Integer::sum).equals(seq.groupBy(i -> i % 100, Integer::sum));
+
+    AtomicInteger threads = new AtomicInteger();
+    Async counted = Async.of(r -> {
+      threads.incrementAndGet();
+      Thread t = new Thread(r);
+      t.setDaemon(true);
+      return t;
+    });
+    assert seq.groupByConcurrent(counted, i -> i % 100, Integer::sum).equals(seq.groupBy(i -> i % 100, Integer::sum));
+    assert threads.get() <= Runtime.getRuntime().availableProcessors() * 3;
+    try {
+      seq.groupByConcurrent(counted, i -> {
+        if (i == 50000) {
+          throw new IllegalStateException("bad key");
+        }
+        return i % 7;
+      }, Integer::sum);
+      assert false;
+    } catch (IllegalStateException e) {
+      assert e.getMessage().equals("bad key");
+    }
+  }
+
+  @Test
+  public void testPushToPull() throws Exception {
+
+    ZeroFlow<Integer> pow = ZeroFlow.gen(1, i -> i * 2);
+    assertTo(ZeroFlow.of("a", "b", "c").zip(pow.asIterable(4)).map((s, i) -> s + i), "a1,b2,c4");
+    ZeroFlow<Integer> seq = c -> {
+      for (int i = 0; i < 1000; i++) {
+        c.accept(i);
+      }
+    };
+    Iterator<Integer> iterator = seq.iterator(16);
+    int               sum      = 0;
+    while (iterator.hasNext()) {
+      sum += iterator.next();
+    }
+    assert sum == 499500;
+    assert !ZeroFlow.<Integer>empty().iterator(4).hasNext();
+
+    CountDownLatch    stopped = new CountDownLatch(2);
+    ZeroFlow<Integer> endless = c -> {
+      try {
+        for (int i = 0; ; i++) {
+          c.accept(i);
+        }
+      } finally {
+        stopped.countDown();
+      }
+    };
+    assertTo(ZeroFlow.of("a", "b").zip(endless.asIterable(4)).map((s, i) -> s + i), "a0,b1");
+    CloseableItr<Integer> abandoned = endless.iterator(4);
+    assert abandoned.hasNext() && abandoned.next() == 0;
+    abandoned.close();
+    assert stopped.await(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testMergeConcurrent() {
+
+    Async             async = Async.daemon();
+    ZeroFlow<Integer> odd   = ZeroFlow.gen(1, i -> i + 2).take(500);
+    ZeroFlow<Integer> even  = ZeroFlow.gen(0, i -> i + 2).take(500);
+    assert ZeroFlow.merge(async, odd, even).sorted().toList().equals(ZeroFlow.gen(0, i -> i + 1).take(1000).toList());
+    assert ZeroFlow.merge(async, ZeroFlow.gen(1, i -> i + 1), even).take(3).count() == 3;
+    assertTo(ZeroFlow.of(1, 2, 3).zipConcurrent(async, ZeroFlow.gen(1, i -> i * 2), Integer::sum), "2,4,7");
+    assert ZeroFlow.of(1, 2, 3).zipLatest(async, ZeroFlow.of(10), Integer::sum).last() == 13;
+  }
+
+  @Test
+  public void testPipelined() {
+
+    ZeroFlow<Integer> seq   = ZeroFlow.gen(0, i -> i + 1).take(10000);
+    ZeroFlow<String>  piped = seq.map(i -> i * 2).pipelined(64).map(i -> i + 1).pipelined(16).map(String::valueOf);
+    assert piped.toList().equals(seq.map(i -> String.valueOf(i * 2 + 1)).toList());
+    assertTo(ZeroFlow.gen(1, i -> i + 1).pipelined(8).take(3), "1,2,3");
+    assertTo(ZeroFlow.<Integer>empty().async(Async.common(), 8), "");
+  }
+
+  @Test
+  public void testPartitionBy() {
+
+    Map<Integer, List<Integer>> byKey = new ConcurrentHashMap<>();
+    LaneGroup<Integer>          lanes = ZeroFlow.gen(0, i -> i + 1).take(10000)
+        .partitionBy(i -> i % 10, 4, i -> byKey.computeIfAbsent(i % 10, k -> new ArrayList<>()).add(i));
+    lanes.join();
+    assert lanes.size() == 4 && Arrays.stream(lanes.depths()).sum() == 0;
+    assert byKey.size() == 10;
+    byKey.forEach((k, list) -> {
+      assert list.size() == 1000;
+      for (int i = 0; i < list.size(); i++) {
+        assert list.get(i) == k + i * 10;
+      }
+    });
+  }
+
+  @Test
+  public void testMapAsync() {
+
+    ZeroFlow<Integer> seq     = ZeroFlow.gen(0, i -> i + 1).take(40);
+    AtomicInteger     running = new AtomicInteger();
+    AtomicInteger     maxSeen = new AtomicInteger();
+    Function<Integer, CompletableFuture<Integer>> slow = i -> CompletableFuture.supplyAsync(() -> {
+      maxSeen.accumulateAndGet(running.incrementAndGet(), Math::max);
+      Async.delay((i * 7) % 5);
+      running.decrementAndGet();
+      return i * 2;
+    });
+    assert seq.mapAsync(4, slow).toList().equals(seq.map(i -> i * 2).toList());
+    assert maxSeen.get() <= 4;
+    assert seq.mapAsyncUnordered(4, slow).sorted().toList().equals(seq.map(i -> i * 2).toList());
+    assertTo(seq.mapAsync(2, slow).take(3), "0,2,4");
+    try {
+      ZeroFlow.of(1, 2).mapAsyncUnordered(2, 20, i -> new CompletableFuture<Integer>()).toList();
+      assert false;
+    } catch (CompletionException e) {
+      assert e.getCause() instanceof TimeoutException;
+    }
+    try {
+      ZeroFlow.of(1, 2, 3).mapAsync(3, 50, i -> i == 2
+          ? new CompletableFuture<Integer>()
+          : CompletableFuture.supplyAsync(() -> {
+            Async.delay(30);
+            return i;
+          })).toList();
+      assert false;
+    } catch (CompletionException e) {
+      assert e.getCause() instanceof TimeoutException;
+    }
+    CompletableFuture<Integer> shared = CompletableFuture.completedFuture(7);
+    assertTo(ZeroFlow.of(1, 2, 3).mapAsync(2, i -> shared), "7,7,7");
+    assertTo(ZeroFlow.of(1, 2, 3).mapAsyncUnordered(2, 1000, i -> shared), "7,7,7");
+  }
+
+  @Test
+  public void testBuffer() {
+
+    ZeroFlow<Integer> seq = c -> {
+      for (int i = 1; i <= 5; i++) {
+        c.accept(i);
+      }
+      Async.delay(300);
+      c.accept(6);
+    };
+    assertTo(seq.buffer(3, 50, Async.daemon()), "[1, 2, 3],[4, 5],[6]");
+    assertTo(ZeroFlow.gen(1, i -> i + 1).buffer(2, 1000, Async.daemon()).take(2), "[1, 2],[3, 4]");
+    assertTo(ZeroFlow.<Integer>empty().buffer(2, 10, Async.daemon()), "");
+  }
+
+  @Test
+  public void testTimerWheel() throws InterruptedException {
+
+    TimerWheel               wheel    = new TimerWheel(1, 64);
+    AtomicInteger            fired    = new AtomicInteger();
+    List<TimerWheel.Timeout>   timeouts = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      timeouts.add(wheel.schedule(fired::incrementAndGet, i % 200, TimeUnit.MILLISECONDS));
+    }
+    int cancelled = 0;
+    for (int i = 0; i < timeouts.size(); i += 2) {
+      if (timeouts.get(i).cancel()) {
+        cancelled++;
+      }
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    Async.daemon().schedule(latch::countDown, 20);
+    assert latch.await(1, TimeUnit.SECONDS);
+    long start = System.nanoTime();
+    while (wheel.pending() > 0 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2)) {
+      Async.delay(10);
+    }
+    assert fired.get() == 2000 - cancelled && cancelled > 500 && wheel.pending() == 0;
+    wheel.close();
+    assertTo(ZeroFlow.interval(2).take(3), "0,1,2");
+    int n = ZeroFlow.gen(0, i -> i + 1).onEach(i -> Async.delay(1)).timeLimit(50).count();
+    assert n > 0 && n < 200;
+
+    // 周期正好是一圈的时长，放回的任务落在正在遍历的槽中
+    TimerWheel         small = new TimerWheel(10, 4);
+    List<Long>         times = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch     ticks = new CountDownLatch(8);
+    TimerWheel.Timeout every = small.scheduleAtFixedRate(() -> {
+      times.add(System.nanoTime());
+      ticks.countDown();
+    }, 0, 40, TimeUnit.MILLISECONDS);
+    assert ticks.await(2, TimeUnit.SECONDS);
+    every.cancel();
+    for (int i = 1; i < 8; i++) {
+      long gap = TimeUnit.NANOSECONDS.toMillis(times.get(i) - times.get(i - 1));
+      assert gap >= 20 && gap <= 70 : gap;
+    }
+    TimerWheel.Timeout later = small.schedule(fired::incrementAndGet, 1, TimeUnit.HOURS);
+    small.close();
+    assert later.isCancelled() && small.pending() == 0;
+    try {
+      small.schedule(fired::incrementAndGet, 1, TimeUnit.MILLISECONDS);
+      assert false;
+    } catch (IllegalStateException ignore) {
+    }
+    try {
+      TimerWheel.shared().close();
+      assert false;
+    } catch (IllegalStateException ignore) {
+    }
+  }
+
+  @Test
+  public void testClock() {
+
+    Clock.Manual      clock = Clock.manual(0);
+    ZeroFlow<Integer> seq   = ZeroFlow.gen(1, i -> i + 1).onEach(i -> clock.advance(10));
+    assertTo(seq.timeLimit(35, clock), "1,2,3");
+    clock.set(0);
+    assertTo(seq.take(8).windowedByTime(25, Reducer.toList(), clock), "[1, 2],[3, 4, 5]");
+    long now = System.currentTimeMillis();
+    assert Math.abs(Clock.coarse().millis() - now) < 1000;
+    try (Clock.Coarse coarse = Clock.coarse(5)) {
+      assert Math.abs(coarse.millis() - now) < 1000;
+    }
+
+    Clock.Manual shared = Clock.manual(0);
+    Async.common().joinAll(ZeroFlow.<Runnable>repeat(4, () -> {
+      for (int i = 0; i < 10000; i++) {
+        shared.advance(1);
+      }
+    }));
+    assert shared.millis() == 40000;
+
+    // 没有读取之后粗粒度时钟停止刷新，不再占用时间轮
+    try (TimerWheel wheel = new TimerWheel(1, 64); Clock.Coarse idle = Clock.coarse(1, wheel)) {
+      idle.millis();
+      assert wheel.pending() == 1;
+      long start = System.nanoTime();
+      while (wheel.pending() > 0 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+        Async.delay(50);
+      }
+      assert wheel.pending() == 0;
+      assert Math.abs(idle.millis() - System.currentTimeMillis()) < 1000 && wheel.pending() == 1;
+    }
+  }
+
+  @Test
+  public void testCancellation() {
+
+    Cancellation token = new Cancellation();
+    assert ZeroFlow.gen(0, i -> i + 1).cancelOn(token).onEach(i -> {
+      if (i == 10) {
+        token.cancel();
+      }
+    }).count() == 11;
+    AtomicInteger calls = new AtomicInteger();
+    token.onCancel(calls::incrementAndGet);
+    assert calls.get() == 1;
+    Cancellation reused  = new Cancellation();
+    Runnable     removed = calls::incrementAndGet;
+    reused.onCancel(removed);
+    assert reused.removeOnCancel(removed) && !reused.removeOnCancel(removed);
+    reused.cancel();
+    assert calls.get() == 1;
+
+    Cancellation  parallel  = new Cancellation();
+    AtomicInteger processed = new AtomicInteger();
+    ZeroFlow.gen(0, i -> i + 1).take(100000).parallel(Async.common(), parallel).consume(i -> {
+      processed.incrementAndGet();
+      parallel.cancel();
+    });
+    assert processed.get() < 100000;
+
+    AsyncZeroFlow<Integer> async = Async.daemon().toAsync(ZeroFlow.gen(0, i -> i + 1));
+    AtomicInteger          seen  = new AtomicInteger();
+    async.consume(i -> seen.incrementAndGet());
+    while (seen.get() == 0) {
+      Async.delay(1);
+    }
+    async.cancel();
+    int n = seen.get();
+    Async.delay(20);
+    assert n > 0 && seen.get() == n && async.cancellation().isCancelled();
+  }
+
+  @Test
+  public void testParallelFind() {
+
+    Async             async    = Async.common();
+    AtomicInteger     tested   = new AtomicInteger();
+    ZeroFlow<Integer> haystack = ZeroFlow.gen(0, i -> i + 1).take(1000000);
+    assert haystack.parallelFind(async, i -> tested.incrementAndGet() >= 0 && i == 3000).get() == 3000;
+    assert tested.get() < 1000000;
+    assert haystack.parallelAny(async, i -> i == 999999);
+    assert !haystack.take(10000).parallelAny(async, i -> i < 0);
+    assert haystack.take(10000).parallelAll(async, i -> i >= 0);
+    assert !haystack.parallelAll(async, i -> i < 5000);
+
+    ZeroFlow<Integer> holes = ZeroFlow.of(1, null, 3);
+    for (Async each : new Async[]{async, Async.daemon()}) {
+      assert !holes.parallelAll(each, Objects::nonNull);
+      assert holes.parallelAny(each, Objects::isNull);
+      assert !holes.parallelFind(each, Objects::isNull).isPresent();
+    }
+    AtomicInteger started = new AtomicInteger();
+    Async counted = Async.of(r -> {
+      started.incrementAndGet();
+      Thread t = new Thread(r);
+      t.setDaemon(true);
+      return t;
+    });
+    CountDownLatch matched = new CountDownLatch(1);
+    ZeroFlow<Integer> gated = haystack.map(i -> {
+      if (i == 512) {
+        Async.apply(() -> matched.await(5, TimeUnit.SECONDS));
+        Async.delay(50);
+      }
+      return i;
+    });
+    assert gated.parallelAny(counted, i -> {
+      if (i == 0) {
+        matched.countDown();
+      }
+      return i == 0;
+    }) && started.get() <= 3;
+  }
+
+  @Test
+  public void testMappedByteSource() throws Exception {
+
+    Path file = Files.createTempFile("mapped", ".txt");
+    try {
+      Files.write(file, "ab\r\ncdef\n\nghijk\nlm".getBytes(StandardCharsets.UTF_8));
+      MappedByteSource source = MappedByteSource.of(file, 4);
+      assert source.size() == 18;
+      assertTo(source.lines(), "ab,cdef,,ghijk,lm");
+      assertTo(source.records((byte) 'c').map(b -> b.remaining()), "4,13");
+      assert new String(source.toBytes(), StandardCharsets.UTF_8).equals("ab\r\ncdef\n\nghijk\nlm");
+      assert source.slice(3, 5).get(1) == 'c' && source.slice(3, 5).remaining() == 5;
+      assert source.segments().count() == 5;
+      assert ByteSource.mapped(file).toSeq().count() == 5;
+      assert ByteSource.mapped(file).toSeq(1).count() == 4;
+
+      Files.write(file, "ab\r\ncd\n\u0a0d".getBytes(StandardCharsets.UTF_16LE));
+      ByteSource utf16 = ByteSource.mapped(file).withCharset(StandardCharsets.UTF_16LE);
+      assertTo(utf16.toSeq(), "ab,cd,\u0a0d");
+      assertTo(utf16.parallelLines(Async.common(), 2), "ab,cd,\u0a0d");
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testParallelLines() throws Exception {
+
+    Path file = Files.createTempFile("lines", ".txt");
+    try {
+      List<String> lines = ZeroFlow.gen(0, i -> i + 1).take(5000).map(i -> "line-" + i).toList();
+      Files.write(file, lines, StandardCharsets.UTF_8);
+      MappedByteSource source = MappedByteSource.of(file, 1000);
+      assert source.parallelLines(Async.common(), 300).toList().equals(lines);
+      assert source.parallelLines(Async.common(), 1, true).toList().equals(lines);
+      assert source.parallelLines(Async.common(), 4096, false).toSet().equals(new HashSet<>(lines));
+      assert ByteSource.of(file).parallelLines(Async.common(), 1 << 20).count() == 5000;
+      assertTo(source.parallelLines(Async.common(), 100).take(3), "line-0,line-1,line-2");
+
+      List<String> latin = ZeroFlow.gen(0, i -> i + 1).take(2000).map(i -> "caf\u00e9-" + i).toList();
+      Files.write(file, latin, StandardCharsets.ISO_8859_1);
+      AtomicInteger tasks   = new AtomicInteger();
+      Async         counted = Async.of(r -> {
+        tasks.incrementAndGet();
+        return new Thread(r);
+      });
+      assert ByteSource.of(file).withCharset(StandardCharsets.ISO_8859_1)
+          .parallelLines(counted, 1000).toList().equals(latin);
+      assert tasks.get() > 1;
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testScanLines() {
+
+    ByteSource source = ByteSource.of("a\tbb\tccc\r\n\nx\u00e9\ty\n".getBytes(StandardCharsets.UTF_8))
+        .withCharset(StandardCharsets.UTF_8);
+    List<CharSequence> seen = new ArrayList<>();
+    source.scanLines().consume(seen::add);
+    assert seen.size() == 3 && seen.get(0) == seen.get(2);
+    assertTo(source.scanLines().map(ByteSlice::toString), "a\tbb\tccc,,x\u00e9\ty");
+    assertTo(source.scanLines().map(CharSequence::length), "8,0,4");
+    assertTo(source.scanLines().flatMap(line -> line.fields((byte) '\t')).map(Object::toString), "a,bb,ccc,,x\u00e9,y");
+
+    ByteSlice[] fields = new ByteSlice[2];
+    ByteSlice   line   = new ByteSlice().set("a,b,c".getBytes(StandardCharsets.UTF_8), 0, 5);
+    assert line.splitInto((byte) ',', fields) == 2;
+    assert fields[0].contentEquals("a") && fields[1].contentEquals("b");
+    String[] reuse = new String[2];
+    assert Splitter.of(',').splitInto("a,b,c", reuse) == 2 && reuse[1].equals("b");
+    for (String name : new String[]{"UTF-16", "GBK", "Shift_JIS"}) {
+      try {
+        new ByteSlice(Charset.forName(name));
+        assert false : name;
+      } catch (IllegalArgumentException ignore) {
+      }
+    }
+    assert new ByteSlice(Charset.forName("windows-1252")).copy().length() == 0;
+    try {
+      ByteSource.of("\u8868|x".getBytes(Charset.forName("GBK"))).withCharset(Charset.forName("GBK")).scanLines().count();
+      assert false;
+    } catch (IllegalArgumentException ignore) {
+    }
+    try {
+      CsvReader.csv(ByteSource.of(new byte[0]).withCharset(Charset.forName("GBK")));
+      assert false;
+    } catch (IllegalArgumentException ignore) {
+    }
+    try {
+      CsvReader.csv(ByteSource.of(new byte[0]).withCharset(StandardCharsets.UTF_16LE));
+      assert false;
+    } catch (IllegalArgumentException ignore) {
+    }
+    assert line.subSequence(2, 5).toString().equals("b,c") && line.isAscii();
+    assertTo(ByteSource.of("1;22;333".getBytes(StandardCharsets.UTF_8)).scanRecords((byte) ';')
+        .map(ByteSlice::byteLength), "1,2,3");
+  }
+
+  @Test
+  public void testNumberParser() {
+
+    byte[] bytes = " -123,9223372036854775807,x".getBytes(StandardCharsets.UTF_8);
+    assert NumberParser.parseInt(bytes, 0, 5) == -123;
+    assert NumberParser.parseLong(bytes, 6, 25) == Long.MAX_VALUE;
+    assert NumberParser.parseLong("-9223372036854775808", 0, 20) == Long.MIN_VALUE;
+    for (String s : new String[]{"x", "", "-", "2147483648", "9223372036854775808", "1.0"}) {
+      try {
+        NumberParser.parseInt(s, 0, s.length());
+        assert false : s;
+      } catch (NumberFormatException ignore) {
+      }
+    }
+    byte[] padded = "\u00e912\u00e9".getBytes(StandardCharsets.UTF_8);
+    for (int[] range : new int[][]{{0, padded.length}, {2, padded.length}, {0, 4}}) {
+      try {
+        NumberParser.parseLong(padded, range[0], range[1]);
+        assert false;
+      } catch (NumberFormatException ignore) {
+      }
+      try {
+        NumberParser.parseDouble(padded, range[0], range[1]);
+        assert false;
+      } catch (NumberFormatException ignore) {
+      }
+    }
+    for (String s : new String[]{"0", "-0", "3.14", "1e10", "-2.5E-3", ".5", "5.", "0.1", "123456789.123456789", "1e300",
+        "4.9e-324", "NaN", "-Infinity", "0x1p3", "12345678901234567890"}) {
+      double d = NumberParser.parseDouble(s, 0, s.length());
+      assert Double.compare(d, Double.parseDouble(s)) == 0 : s;
+      byte[] b = s.getBytes(StandardCharsets.UTF_8);
+      assert Double.compare(NumberParser.parseDouble(b, 0, b.length), d) == 0 : s;
+    }
+
+    ByteSource source = ByteSource.of("1,2, 3\n\n40,,-5\n".getBytes(StandardCharsets.UTF_8));
+    assert source.toIntFlow(',').boxed().toList().toString().equals("[1, 2, 3, 40, -5]");
+    long[] sum = {0};
+    source.toLongFlow(',').consume(l -> sum[0] += l);
+    assert sum[0] == 41;
+    double[] total = {0};
+    ByteSource.of("0.5\t1.25\n2".getBytes(StandardCharsets.UTF_8)).toDoubleFlow('\t').consume(d -> total[0] += d);
+    assert total[0] == 3.75;
+  }
+
+  @Test
+  public void testSplitter() {
+
+    assertTo(Splitter.of("::").split("::a::b::"), "|", "|a|b|");
+    assertTo(Splitter.of(',').split(",a,,b"), "|", "|a||b");
+    assertTo(Splitter.of(Pattern.compile("\\s+")).split("a  b c", 2), "|", "a|b");
+    assertTo(Splitter.of("--").splitView("x--yy--").map(CharSequence::length), "1,2,0");
+
+    List<CharSequence> views = new ArrayList<>();
+    Splitter.of('\t').splitView("1\t22\t333").consume(views::add);
+    assert views.size() == 3 && views.get(0) == views.get(2) && views.get(0) instanceof CharSlice;
+    assertTo(Splitter.of('\t').splitView("1\t22\t333").map(v -> ((CharSlice) v).parseInt()), "1,22,333");
+
+    String[] reuse = new String[3];
+    assert Splitter.of(';').splitInto("a;b", reuse) == 2 && reuse[1].equals("b");
+    assert Splitter.of(';').splitInto("a;b;c;d", reuse) == 3 && reuse[2].equals("c");
+    assert Splitter.ofEmpty().splitInto("abc", reuse) == 1 && reuse[0].equals("abc");
+  }
+
+  @Test
+  public void testCsvReader() throws Exception {
+
+    String text = "id,name,score\r\n1,\"Smith, J\",3.5\n\n2,\"say \"\"hi\"\"\nthere\",\r\n3,plain,-1e2";
+    ByteSource source = ByteSource.of(text.getBytes(StandardCharsets.UTF_8));
+    assertTo(source.toCsv(',').rows().map(CsvReader.Row::toString), "|",
+        "[id, name, score]|[1, Smith, J, 3.5]|[2, say \"hi\"\nthere, ]|[3, plain, -1e2]");
+
+    CsvReader reader = CsvReader.csv(source).skipHeader().select(2, 0);
+    assertTo(reader.rows().map(r -> r.getInt(0)), "1,2,3");
+    assertTo(reader.rows().filter(r -> !r.isEmpty(2)).map(r -> r.getDouble(2)), "3.5,-100.0");
+    List<CsvReader.Row> kept = reader.rows().map(CsvReader.Row::copy).toList();
+    assert kept.get(0).getCharSequence(0).toString().equals("1") && kept.get(2).getLong(0) == 3;
+    try {
+      reader.rows().consume(r -> r.getString(1));
+      assert false;
+    } catch (IllegalArgumentException ignore) {
+    }
+
+    assertTo(CsvReader.tsv(ByteSource.of("a\t\"b\"\n".getBytes(StandardCharsets.UTF_8))).rows()
+        .map(r -> r.getString(1)), "\"b\"");
+
+    Path file = Files.createTempFile("rows", ".csv");
+    try {
+      List<String> lines = ZeroFlow.gen(0, i -> i + 1).take(3000).map(i -> i + ",\"n" + i + "\"," + i * 0.5).toList();
+      lines.add(0, "id,name,half");
+      Files.write(file, lines, StandardCharsets.UTF_8);
+      CsvReader parallel = CsvReader.csv(MappedByteSource.of(file, 4096)).skipHeader().select(1, 2);
+      assert parallel.parallelRows(Async.common(), 500).map(CsvReader.Row::toString).toList()
+          .equals(parallel.rows().map(CsvReader.Row::toString).toList());
+      double[] sum = {0};
+      parallel.parallelRows(Async.common(), 500).consume(r -> sum[0] += r.getDouble(2));
+      assert sum[0] == 2249250.0;
+
+      lines.replaceAll(l -> l.replace("\"n", "\"\u00e9"));
+      Files.write(file, lines, StandardCharsets.ISO_8859_1);
+      AtomicInteger tasks   = new AtomicInteger();
+      Async         counted = Async.of(r -> {
+        tasks.incrementAndGet();
+        return new Thread(r);
+      });
+      CsvReader fromPath = CsvReader.csv(ByteSource.of(file).withCharset(StandardCharsets.ISO_8859_1)).skipHeader();
+      assert fromPath.parallelRows(counted, 500).map(CsvReader.Row::toString).toList()
+          .equals(fromPath.rows().map(CsvReader.Row::toString).toList());
+      assert fromPath.parallelRows(counted, 500).first().getString(1).equals("\u00e90");
+      assert tasks.get() > 1;
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testWriteDelimited() throws Exception {
+
+    Path file = Files.createTempFile("out", ".csv");
+    try {
+      ZeroFlow<Integer> ids = ZeroFlow.gen(-5, i -> i + 1).take(20000);
+      ids.writeDelimited(file, ',', i -> i, i -> i * 1000000007L, i -> i / 8.0, i -> i % 3 == 0 ? "a,\"b\"" : "\u00e9",
+          i -> null);
+      List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+      assert lines.size() == 20000;
+      assert lines.get(0).equals("-5,-5000000035,-0.625,\u00e9,");
+      assert lines.get(2).equals("-3,-3000000021,-0.375,\"a,\"\"b\"\"\",");
+      assert lines.get(6).equals("1,1000000007,0.125,\u00e9,");
+      assert lines.get(21).equals("16,16000000112,2.0,\u00e9,");
+
+      ZeroFlow.gen(-5, i -> i + 1).take(30000)
+          .writeDelimited(file, '\t', Async.daemon(), i -> i, i -> i * 0.1, i -> i * 1e-5, i -> Math.PI * i);
+      double[] sum = {0};
+      CsvReader.tsv(ByteSource.of(file)).rows().consume(r -> {
+        int i = r.getInt(0);
+        assert r.getDouble(1) == i * 0.1 && r.getDouble(2) == i * 1e-5 && r.getDouble(3) == Math.PI * i;
+        sum[0] += i;
+      });
+      assert sum[0] == 449835000.0 && Files.size(file) > FileSink.BUFFER_SIZE;
+
+      ZeroFlow.unit(1).writeDelimited(file, ',', i -> 0.1f, i -> -2.5e-3f, i -> 1048576f, i -> 1e10f, i -> Float.NaN);
+      assert Files.readAllLines(file, StandardCharsets.UTF_8).get(0).equals("0.1,-0.0025,1048576.0,1.0E10,NaN");
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testWriteTo() throws Exception {
+
+    Path file = Files.createTempFile("out", ".bin");
+    try {
+      ZeroFlow<Integer> seq = ZeroFlow.gen(0, i -> i + 1).take(300000);
+      seq.writeTo(file, (i, sink) -> sink.put(i).put((byte) '\n'), Async.daemon());
+      long[] sum = {0};
+      ByteSource.of(file).toLongFlow(',').consume(l -> sum[0] += l);
+      assert sum[0] == 300000L * 299999 / 2;
+
+      AtomicInteger slow = new AtomicInteger();
+      seq.writeTo(file, (i, sink) -> {
+        sink.put("v").put(i).put((byte) ' ').put(i * 0.5).put((byte) '\n');
+        slow.incrementAndGet();
+      }, Async.daemon(), 4, true);
+      assertTo(ByteSource.of(file).toSeq().take(3), "v0 0.0,v1 0.5,v2 1.0");
+      assert ByteSource.of(file).toSeq().count() == 300000 && slow.get() == 300000;
+
+      try {
+        seq.writeTo(file, (i, sink) -> sink.put(i), Async.daemon(), 1, false);
+        assert false;
+      } catch (IllegalArgumentException ignore) {
+      }
+
+      CountDownLatch release = new CountDownLatch(1);
+      Async held = Async.of(r -> {
+        Thread t = new Thread(() -> {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          r.run();
+        });
+        t.setDaemon(true);
+        return t;
+      });
+      FileSink blocked  = FileSink.open(file, held, 64, 2, false);
+      Thread   producer = new Thread(() -> {
+        for (int i = 0; i < 64 * 10; i++) {
+          blocked.put((byte) 'x');
+        }
+      });
+      producer.start();
+      while (producer.getState() != Thread.State.WAITING) {
+        assert producer.isAlive();
+        Thread.sleep(1);
+      }
+      assert blocked.written() == 128;
+      release.countDown();
+      producer.join();
+      blocked.close();
+      assert Files.size(file) == 64 * 10;
+
+      CountDownLatch later   = new CountDownLatch(1);
+      FileSink       grouped = FileSink.open(file, Async.of(r -> new Thread(() -> {
+        try {
+          later.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        r.run();
+      })), 64, 4, true);
+      for (int i = 0; i < 3; i++) {
+        grouped.put(new byte[64], 0, 64).flush();
+      }
+      assert grouped.written() == 192 && grouped.forced() == 0;
+      later.countDown();
+      grouped.close();
+      assert grouped.forced() == 1 && Files.size(file) == 192;
+
+      Path full = Paths.get("/dev/full");
+      if (Files.isWritable(full)) {
+        List<Thread> threads = new ArrayList<>();
+        Async tracked = Async.of(r -> {
+          Thread t = new Thread(r);
+          t.setDaemon(true);
+          threads.add(t);
+          return t;
+        });
+        FileSink sink = FileSink.open(full, tracked, 64, 2, false);
+        try {
+          for (int i = 0; i < 1000; i++) {
+            sink.put(i);
+          }
+        } catch (UncheckedIOException ignore) {
+        }
+        try {
+          sink.close();
+          assert false;
+        } catch (UncheckedIOException ignore) {
+        }
+        threads.get(0).join(5000);
+        assert !threads.get(0).isAlive();
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testFileTransfer() throws Exception {
+
+    Path a   = Files.write(Files.createTempFile("a", ".txt"), "hello ".getBytes(StandardCharsets.UTF_8));
+    Path b   = Files.write(Files.createTempFile("b", ".txt"), "world".getBytes(StandardCharsets.UTF_8));
+    Path out = Files.createTempFile("out", ".txt");
+    try {
+      ByteSource.of(a).write(out);
+      assert ByteSource.of(out).asString().equals("hello ");
+      ByteSource.of(b).write(out, 1, 3);
+      assert ByteSource.of(out).asString().equals("orl");
+      ByteSource.mapped(b).write(out, 2, Long.MAX_VALUE);
+      assert ByteSource.of(out).asString().equals("rld");
+      ByteSource.of(b).write(out, 10, 3);
+      assert Files.size(out) == 0;
+      ByteSource.of("0123456789".getBytes(StandardCharsets.UTF_8)).write(out, 7, 100);
+      assert ByteSource.of(out).asString().equals("789");
+
+      ByteSource.concat(out, ByteSource.of(a), ByteSource.mapped(b), ByteSource.of(Arrays.asList("!", "?")));
+      assert ByteSource.of(out).asString().equals("hello world!\n?\n");
+      try {
+        ByteSource.concat(a, ByteSource.of(b), ByteSource.of(a));
+        assert false;
+      } catch (IllegalArgumentException ignore) {
+      }
+      assert ByteSource.of(a).asString().equals("hello ");
+
+      Path alias = a.getParent().resolve(".").resolve(a.getFileName());
+      Path link  = Files.createSymbolicLink(a.resolveSibling(a.getFileName() + ".link"), a);
+      try {
+        for (Path same : new Path[]{alias, link}) {
+          assert ByteSource.of(a).write(same) == same;
+          assert ByteSource.of(a).withCharset(StandardCharsets.ISO_8859_1).write(same) == same;
+          assert ByteSource.mapped(a).write(same) == same;
+          try {
+            ByteSource.of(a).write(same, 0, 3);
+            assert false;
+          } catch (IllegalArgumentException ignore) {
+          }
+          try {
+            ByteSource.concat(same, ByteSource.of(b), ByteSource.mapped(a));
+            assert false;
+          } catch (IllegalArgumentException ignore) {
+          }
+          assert ByteSource.of(a).asString().equals("hello ");
+        }
+      } finally {
+        Files.delete(link);
+      }
+    } finally {
+      Files.delete(a);
+      Files.delete(b);
+      Files.delete(out);
+    }
+  }
+
+  @Test
+  public void testGzip() throws Exception {
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 200000; i++) {
+      sb.append("line ").append(i).append('\n');
+    }
+    byte[]     data   = sb.toString().getBytes(StandardCharsets.UTF_8);
+    ByteSource source = ByteSource.of(data);
+    assert Arrays.equals(source.gzip().gunzip().toBytes(), data);
+    assert Arrays.equals(source.deflate().inflate().toBytes(), data);
+    assert source.gzip().gunzip().toSeq().first().equals("line 0");
+
+    Async async = Async.common();
+    Path  bgzf  = source.gzip(async).write(Files.createTempFile("bgzf", ".gz"));
+    Path  plain = source.gzip().write(Files.createTempFile("plain", ".gz"));
+    Path  mixed = Files.createTempFile("mixed", ".gz");
+    try {
+      assert Arrays.equals(ByteSource.of(bgzf).gunzip().toBytes(), data);
+      assert Arrays.equals(ByteSource.of(bgzf).gunzip(async).toBytes(), data);
+      assert Arrays.equals(ByteSource.of(plain).gunzip(async).toBytes(), data);
+      ByteSource.concat(mixed, ByteSource.of(bgzf), ByteSource.of(plain));
+      assert ByteSource.mapped(mixed).gunzip(async).toSeq().count() == 400000;
+      assert ByteSource.of(new byte[0]).gzip(async).gunzip().toBytes().length == 0;
+
+      byte[] bytes = Files.readAllBytes(bgzf);
+      int    size  = (bytes[16] & 0xff | (bytes[17] & 0xff) << 8) + 1;
+      for (int isize : new int[]{-1, Integer.MAX_VALUE, (1 << 16) + 1}) {
+        bytes[size - 4] = (byte) isize;
+        bytes[size - 3] = (byte) (isize >> 8);
+        bytes[size - 2] = (byte) (isize >> 16);
+        bytes[size - 1] = (byte) (isize >> 24);
+        Files.write(mixed, bytes);
+        try {
+          ByteSource.mapped(mixed).gunzip(async).toBytes();
+          assert false;
+        } catch (RuntimeException e) {
+          Throwable cause = e;
+          while (cause != null && !(cause instanceof ZipException)) {
+            cause = cause.getCause();
+          }
+          assert cause != null && cause.getMessage().startsWith("Invalid GZIP member size") : e;
+        }
+      }
+
+      // BGZF成员之后的普通成员尾部损坏，与按顺序解压抛出同样的异常
+      byte[] head    = Files.readAllBytes(bgzf);
+      byte[] broken  = Files.readAllBytes(plain);
+      broken[broken.length - 5] ^= 1;
+      byte[] corrupt = Arrays.copyOf(head, head.length + broken.length);
+      System.arraycopy(broken, 0, corrupt, head.length, broken.length);
+      Files.write(mixed, corrupt);
+      for (ByteSource gz : new ByteSource[]{ByteSource.mapped(mixed).gunzip(async), ByteSource.of(mixed).gunzip()}) {
+        try {
+          gz.toBytes();
+          assert false;
+        } catch (UncheckedIOException e) {
+          assert e.getCause() instanceof ZipException : e;
+        }
+      }
+    } finally {
+      Files.delete(bgzf);
+      Files.delete(plain);
+      Files.delete(mixed);
+    }
+  }
+
   static class Node {
 
     final int value;